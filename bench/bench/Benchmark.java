@@ -0,0 +1,24 @@
+package bench;
+
+/**
+ * Один замер: setUp готовит состояние нужного размера, run выполняет одну операцию.
+ * Результат run передается в {@link Blackhole}, чтобы JIT не выбросил вычисление.
+ */
+public interface Benchmark {
+    int UNLIMITED = -1;
+
+    void setUp(int size);
+
+    Object run();
+
+    /**
+     * Сколько операций можно выполнить на подготовленном состоянии, например удалить не больше size задач.
+     * Если ограничение есть, состояние готовится заново перед каждой итерацией.
+     */
+    default int operationLimit(int size) {
+        return UNLIMITED;
+    }
+
+    default void tearDown() {
+    }
+}
@@ -0,0 +1,189 @@
+package bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Запуск замеров в духе JMH: разогревающие и измеряемые итерации фиксированной длительности,
+ * параметр размера доски, выделенная память на операцию и сборки мусора за итерацию.
+ * Аргументы повторяют ключи JMH: -wi, -i, -r (мс), -p size=1000,100000 и регулярное выражение
+ * для имен замеров. Для досок на 1M задач нужна куча побольше, например -Xmx4g.
+ */
+public class BenchmarkRunner {
+    private static final Map<String, Supplier<Benchmark>> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("taskManager.createTask", TaskManagerBenchmarks.CreateTask::new);
+        BENCHMARKS.put("taskManager.getTask", TaskManagerBenchmarks.GetTask::new);
+        BENCHMARKS.put("taskManager.updateTask", TaskManagerBenchmarks.UpdateTask::new);
+        BENCHMARKS.put("taskManager.deleteTask", TaskManagerBenchmarks.DeleteTask::new);
+        BENCHMARKS.put("epic.updateSubtaskStatus", EpicBenchmarks.UpdateSubtaskStatus::new);
+        BENCHMARKS.put("epic.updateEpicTaskStatus", EpicBenchmarks.UpdateEpicTaskStatus::new);
+        BENCHMARKS.put("concurrent.updateSubtask.t1", () -> new ConcurrentBenchmarks.UpdateSubtasks(1));
+        BENCHMARKS.put("concurrent.updateSubtask.t2", () -> new ConcurrentBenchmarks.UpdateSubtasks(2));
+        BENCHMARKS.put("concurrent.updateSubtask.t4", () -> new ConcurrentBenchmarks.UpdateSubtasks(4));
+        BENCHMARKS.put("concurrent.updateSubtask.t8", () -> new ConcurrentBenchmarks.UpdateSubtasks(8));
+        BENCHMARKS.put("history.add", HistoryBenchmarks.Add::new);
+        BENCHMARKS.put("history.getHistory", HistoryBenchmarks.GetHistory::new);
+        BENCHMARKS.put("csv.encode", CSVFormatterBenchmarks.Encode::new);
+        BENCHMARKS.put("csv.decode", CSVFormatterBenchmarks.Decode::new);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 1000;
+    private int[] sizes = {1_000, 100_000, 1_000_000};
+    private Pattern filter = Pattern.compile(".*");
+    private final Blackhole blackhole = new Blackhole();
+
+    public static void main(String[] args) {
+        final BenchmarkRunner runner = new BenchmarkRunner();
+        runner.parse(args);
+        runner.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi" -> warmupIterations = Integer.parseInt(args[++i]);
+                case "-i" -> iterations = Integer.parseInt(args[++i]);
+                case "-r" -> iterationMillis = Long.parseLong(args[++i]);
+                case "-p" -> sizes = parseSizes(args[++i]);
+                default -> filter = Pattern.compile(args[i]);
+            }
+        }
+        if (iterations <= 0 || iterationMillis <= 0) {
+            throw new IllegalArgumentException("Число и длительность итераций должны быть положительными.");
+        }
+    }
+
+    private static int[] parseSizes(String parameter) {
+        if (!parameter.startsWith("size=")) {
+            throw new IllegalArgumentException("Поддерживается только параметр size, получено: " + parameter);
+        }
+        final String[] values = parameter.substring("size=".length()).split(",");
+        final int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Integer.parseInt(values[i].replace("_", ""));
+        }
+        return result;
+    }
+
+    private void run() {
+        System.out.printf("%-28s %10s %14s %12s %14s %8s %10s%n",
+                "Benchmark", "size", "ns/op", "stddev", "B/op", "gc", "gc ms");
+        for (Map.Entry<String, Supplier<Benchmark>> entry : BENCHMARKS.entrySet()) {
+            if (!filter.matcher(entry.getKey()).find()) {
+                continue;
+            }
+            for (int size : sizes) {
+                final Result result = measure(entry.getValue().get(), size);
+                System.out.printf("%-28s %10d %14.1f %12.1f %14.1f %8d %10d%n", entry.getKey(), size,
+                        result.mean(), result.stddev(), result.bytesPerOperation(), result.gcCount, result.gcMillis);
+            }
+        }
+    }
+
+    private Result measure(Benchmark benchmark, int size) {
+        final int limit = benchmark.operationLimit(size);
+        final Result result = new Result();
+        benchmark.setUp(size);
+        try {
+            for (int i = 0; i < warmupIterations + iterations; i++) {
+                if (limit != Benchmark.UNLIMITED && i > 0) {
+                    benchmark.tearDown();
+                    benchmark.setUp(size);
+                }
+                final boolean warmup = i < warmupIterations;
+                final long gcCount = gcCount();
+                final long gcMillis = gcMillis();
+                final long allocated = THREADS.getCurrentThreadAllocatedBytes();
+                final long start = System.nanoTime();
+                final long operations = iterate(benchmark, limit, start + iterationMillis * 1_000_000);
+                final long elapsed = System.nanoTime() - start;
+                if (!warmup) {
+                    result.nanosPerOperation.add((double) elapsed / operations);
+                    result.operations += operations;
+                    result.allocatedBytes += THREADS.getCurrentThreadAllocatedBytes() - allocated;
+                    result.gcCount += gcCount() - gcCount;
+                    result.gcMillis += gcMillis() - gcMillis;
+                }
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+        return result;
+    }
+
+    /**
+     * Время проверяется раз в 16 операций, чтобы вызов System.nanoTime() не забивал короткие операции.
+     */
+    private long iterate(Benchmark benchmark, int limit, long deadline) {
+        long operations = 0;
+        while (limit == Benchmark.UNLIMITED || operations < limit) {
+            blackhole.consume(benchmark.run());
+            operations++;
+            if ((operations & 15) == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        return operations;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static class Result {
+        private final List<Double> nanosPerOperation = new ArrayList<>();
+        private long operations;
+        private long allocatedBytes;
+        private long gcCount;
+        private long gcMillis;
+
+        double mean() {
+            double sum = 0;
+            for (double value : nanosPerOperation) {
+                sum += value;
+            }
+            return sum / nanosPerOperation.size();
+        }
+
+        double stddev() {
+            if (nanosPerOperation.size() < 2) {
+                return 0;
+            }
+            final double mean = mean();
+            double squares = 0;
+            for (double value : nanosPerOperation) {
+                squares += (value - mean) * (value - mean);
+            }
+            return Math.sqrt(squares / (nanosPerOperation.size() - 1));
+        }
+
+        double bytesPerOperation() {
+            return (double) allocatedBytes / operations;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package bench;
+
+/**
+ * Поглощает результаты замеров. Сравнение с двумя volatile-полями JIT не может доказать ложным,
+ * поэтому результат считается использованным, а запись в память на каждую операцию не нужна.
+ */
+final class Blackhole {
+    private volatile Object first = new Object();
+    private volatile Object second = new Object();
+
+    void consume(Object value) {
+        if (value == first & value == second) {
+            throw new IllegalStateException("Недостижимая ветка.");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import mappers.CSVFormatter;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+
+/**
+ * Кодирование и разбор строк CSV. Размер задает число разных задач, которые перебираются по кругу.
+ */
+final class CSVFormatterBenchmarks {
+    private CSVFormatterBenchmarks() {
+    }
+
+    abstract static class Records implements Benchmark {
+        Task[] tasks;
+        String[] lines;
+        int cursor;
+
+        @Override
+        public void setUp(int size) {
+            tasks = new Task[size];
+            lines = new String[size];
+            for (int i = 0; i < size; i++) {
+                tasks[i] = i % 2 == 0
+                        ? new Task(i + 1, "Задача " + i, "Описание задачи " + i, TaskStatus.IN_PROGRESS)
+                        : new Subtask(i + 1, "Подзадача " + i, "Описание подзадачи " + i, TaskStatus.DONE, i);
+                lines[i] = CSVFormatter.taskToString(tasks[i]);
+            }
+            cursor = 0;
+        }
+
+        int next() {
+            final int index = cursor;
+            cursor = (cursor + 1) % tasks.length;
+            return index;
+        }
+    }
+
+    static final class Encode extends Records {
+        @Override
+        public Object run() {
+            return CSVFormatter.taskToString(tasks[next()]);
+        }
+    }
+
+    static final class Decode extends Records {
+        @Override
+        public Object run() {
+            return CSVFormatter.stringToTask(lines[next()]);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package bench;
+
+import model.EpicTask;
+import model.Subtask;
+import model.TaskStatus;
+import service.ConcurrentTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Масштабирование записи {@link ConcurrentTaskManager}: одна операция — пакет из {@link #BATCH} обновлений
+ * подзадач, поделенный поровну между потоками. Подзадачи разложены по {@link #EPICS} эпикам, и каждый поток
+ * обновляет только свои эпики, поэтому потоки не делят полосы блокировок. Если общих мониторов на пути
+ * записи нет, время пакета падает с ростом числа потоков, пока их хватает ядрам.
+ * B/op здесь не показателен: раннер считает выделения только в своем потоке, а пишут потоки пула.
+ */
+final class ConcurrentBenchmarks {
+    static final int BATCH = 4096;
+    static final int EPICS = 64;
+
+    private ConcurrentBenchmarks() {
+    }
+
+    static final class UpdateSubtasks implements Benchmark {
+        private final int threads;
+        private ConcurrentTaskManager manager;
+        private ExecutorService executor;
+        private int[][] subtaskIds;
+        private int[][] epicIds;
+        private int[] cursors;
+
+        UpdateSubtasks(int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public void setUp(int size) {
+            manager = new ConcurrentTaskManager();
+            final int[] epics = new int[EPICS];
+            for (int i = 0; i < EPICS; i++) {
+                final EpicTask epic = new EpicTask("Эпик " + i, "Эпик для параллельной записи");
+                manager.createEpicTask(epic);
+                epics[i] = epic.getId();
+            }
+            final List<List<Integer>> subtasksOfThread = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                subtasksOfThread.add(new ArrayList<>());
+            }
+            for (int i = 0; i < Math.max(size, threads); i++) {
+                final Subtask subtask = new Subtask("Подзадача " + i, "Описание подзадачи", epics[i % EPICS]);
+                manager.createSubtask(subtask);
+                subtasksOfThread.get(i % EPICS % threads).add(subtask.getId());
+            }
+            subtaskIds = new int[threads][];
+            epicIds = new int[threads][];
+            for (int t = 0; t < threads; t++) {
+                subtaskIds[t] = subtasksOfThread.get(t).stream().mapToInt(Integer::intValue).toArray();
+                epicIds[t] = new int[subtaskIds[t].length];
+                for (int i = 0; i < subtaskIds[t].length; i++) {
+                    epicIds[t][i] = manager.getSubtask(subtaskIds[t][i]).getEpicId();
+                }
+            }
+            cursors = new int[threads];
+            executor = Executors.newFixedThreadPool(threads);
+        }
+
+        @Override
+        public Object run() {
+            final List<Callable<Integer>> work = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                work.add(() -> updates(thread, BATCH / threads));
+            }
+            int updated = 0;
+            try {
+                for (Future<Integer> future : executor.invokeAll(work)) {
+                    updated += future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Замер прерван.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Поток замера упал.", e.getCause());
+            }
+            return updated;
+        }
+
+        private int updates(int thread, int count) {
+            final int[] ids = subtaskIds[thread];
+            int cursor = cursors[thread];
+            for (int i = 0; i < count; i++) {
+                final TaskStatus status = (cursor / ids.length & 1) == 0 ? TaskStatus.DONE : TaskStatus.NEW;
+                final int index = cursor % ids.length;
+                manager.updateSubtask(new Subtask(ids[index], "Подзадача", "Описание подзадачи", status,
+                        epicIds[thread][index]));
+                cursor++;
+            }
+            cursors[thread] = cursor;
+            return count;
+        }
+
+        @Override
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import model.EpicTask;
+import model.Subtask;
+import model.TaskStatus;
+import service.InMemoryTaskManager;
+
+/**
+ * Пересчет статуса эпика, у которого size подзадач.
+ */
+final class EpicBenchmarks {
+    private EpicBenchmarks() {
+    }
+
+    abstract static class LargeEpic implements Benchmark {
+        InMemoryTaskManager manager;
+        int epicId;
+        int firstSubtaskId;
+        int size;
+        int cursor;
+
+        @Override
+        public void setUp(int size) {
+            manager = new InMemoryTaskManager();
+            final EpicTask epic = new EpicTask("Эпик", "Большой эпик");
+            manager.createEpicTask(epic);
+            epicId = epic.getId();
+            for (int i = 0; i < size; i++) {
+                manager.createSubtask(new Subtask("Подзадача " + i, "Описание подзадачи", epicId));
+            }
+            firstSubtaskId = epicId + 1;
+            this.size = size;
+            cursor = 0;
+        }
+    }
+
+    /**
+     * Смена статуса одной подзадачи: NEW и DONE чередуются, поэтому статус эпика тоже меняется.
+     */
+    static final class UpdateSubtaskStatus extends LargeEpic {
+        @Override
+        public Object run() {
+            final int id = firstSubtaskId + cursor;
+            cursor = (cursor + 1) % size;
+            final Subtask current = manager.getSubtask(id);
+            final TaskStatus status = current.getStatus() == TaskStatus.DONE ? TaskStatus.NEW : TaskStatus.DONE;
+            final Subtask subtask = new Subtask(id, current.getTitle(), current.getDescription(), status, epicId);
+            manager.updateSubtask(subtask);
+            return subtask;
+        }
+    }
+
+    static final class UpdateEpicTaskStatus extends LargeEpic {
+        @Override
+        public Object run() {
+            manager.updateEpicTaskStatus(epicId);
+            return manager;
+        }
+    }
+}
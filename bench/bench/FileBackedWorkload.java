@@ -0,0 +1,295 @@
+package bench;
+
+import mappers.BinaryTaskSerializer;
+import mappers.CSVTaskSerializer;
+import mappers.TaskSerializer;
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import service.FileBackedTaskManager;
+import storage.Durability;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Смешанная нагрузка на FileBackedTaskManager: 80% чтений, 15% смен статуса подзадач, 5% новых подзадач.
+ * Для каждого сочетания размера доски, формата и режима записи доска строится и сохраняется заранее,
+ * затем замеряются загрузка loadFromFile, пропускная способность, перцентили задержки и байты,
+ * записанные процессом на операцию (по wchar из /proc/self/io, вместе с фоновой компакцией и историей).
+ * Результаты пишутся в JSON, чтобы сравнивать способы хранения на одной машине.
+ * Ключи: -p size=1000,100000 -s csv,binary -d sync,group:10:128,async -n 50000 -w 10000 -o results.json.
+ * Загрузка идет из только что записанного файла, поэтому он обычно уже в кеше ОС.
+ */
+public class FileBackedWorkload {
+    private static final int READ_PERCENT = 80;
+    private static final int UPDATE_PERCENT = 15;
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private int[] sizes = {1_000, 100_000, 1_000_000};
+    private String[] serializers = {"csv", "binary"};
+    private String[] durabilities = {"sync", "group:10:128", "async"};
+    private int operations = 50_000;
+    private int warmupOperations = 10_000;
+    private long seed = 42;
+    private File output;
+
+    public static void main(String[] args) throws IOException {
+        final FileBackedWorkload workload = new FileBackedWorkload();
+        workload.parse(args);
+        workload.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p" -> sizes = parseSizes(args[++i]);
+                case "-s" -> serializers = args[++i].split(",");
+                case "-d" -> durabilities = args[++i].split(",");
+                case "-n" -> operations = Integer.parseInt(args[++i]);
+                case "-w" -> warmupOperations = Integer.parseInt(args[++i]);
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-o" -> output = new File(args[++i]);
+                default -> throw new IllegalArgumentException("Неизвестный ключ: " + args[i]);
+            }
+        }
+        if (operations <= 0) {
+            throw new IllegalArgumentException("Число операций должно быть положительным.");
+        }
+    }
+
+    private static int[] parseSizes(String parameter) {
+        if (!parameter.startsWith("size=")) {
+            throw new IllegalArgumentException("Поддерживается только параметр size, получено: " + parameter);
+        }
+        return Arrays.stream(parameter.substring("size=".length()).split(","))
+                .mapToInt(value -> Integer.parseInt(value.replace("_", "")))
+                .toArray();
+    }
+
+    private void run() throws IOException {
+        final List<String> results = new ArrayList<>();
+        for (int size : sizes) {
+            for (String serializer : serializers) {
+                for (String durability : durabilities) {
+                    final String result = measure(size, serializer, durability);
+                    System.err.println(result);
+                    results.add(result);
+                }
+            }
+        }
+        final String json = "{\"timestamp\":\"" + Instant.now() + "\",\"java\":\"" + System.getProperty("java.version")
+                + "\",\"os\":\"" + System.getProperty("os.name") + "\",\"processors\":"
+                + Runtime.getRuntime().availableProcessors() + ",\"maxHeapBytes\":" + Runtime.getRuntime().maxMemory()
+                + ",\"results\":[\n" + String.join(",\n", results) + "\n]}\n";
+        if (output == null) {
+            System.out.print(json);
+        } else {
+            Files.writeString(output.toPath(), json, StandardCharsets.UTF_8);
+        }
+    }
+
+    private String measure(int size, String serializerName, String durabilityName) throws IOException {
+        final Path directory = Files.createTempDirectory("kanban-workload");
+        try {
+            final File backupFile = directory.resolve("backup").toFile();
+            final Board board = Board.build(backupFile, size, serializer(serializerName));
+
+            final long loadStart = System.nanoTime();
+            final FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(backupFile,
+                    durability(durabilityName), serializer(serializerName));
+            final long loadNanos = System.nanoTime() - loadStart;
+
+            final Random random = new Random(seed);
+            final long[] latencies = new long[operations];
+            try {
+                for (int i = 0; i < warmupOperations; i++) {
+                    board.step(manager, random);
+                }
+                manager.flush();
+                final long writtenBefore = writtenBytes();
+                final long start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    final long operationStart = System.nanoTime();
+                    board.step(manager, random);
+                    latencies[i] = System.nanoTime() - operationStart;
+                }
+                manager.flush();
+                final long elapsed = System.nanoTime() - start;
+                final long written = writtenBytes() - writtenBefore;
+                Arrays.sort(latencies);
+                return "{\"size\":" + size + ",\"serializer\":\"" + serializerName + "\",\"durability\":\""
+                        + durabilityName + "\",\"operations\":" + operations
+                        + ",\"loadMillis\":" + format(loadNanos / 1e6)
+                        + ",\"throughputOpsPerSec\":" + format(operations / (elapsed / 1e9))
+                        + ",\"latencyNanos\":{\"p50\":" + percentile(latencies, 0.5)
+                        + ",\"p99\":" + percentile(latencies, 0.99) + ",\"p999\":" + percentile(latencies, 0.999)
+                        + ",\"max\":" + latencies[latencies.length - 1] + "}"
+                        + ",\"bytesWrittenPerOp\":" + (written < 0 ? "null" : format((double) written / operations))
+                        + ",\"diskBytes\":" + directorySize(directory) + "}";
+            } finally {
+                manager.close();
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static TaskSerializer serializer(String name) {
+        return switch (name) {
+            case "csv" -> new CSVTaskSerializer();
+            case "binary" -> new BinaryTaskSerializer();
+            default -> throw new IllegalArgumentException("Неизвестный формат: " + name);
+        };
+    }
+
+    /**
+     * sync, async или group:<интервал, мс>:<операций в группе>.
+     */
+    private static Durability durability(String name) {
+        if (name.equals("sync")) {
+            return Durability.sync();
+        }
+        if (name.equals("async")) {
+            return Durability.async();
+        }
+        final String[] parts = name.split(":");
+        if (parts.length != 3 || !parts[0].equals("group")) {
+            throw new IllegalArgumentException("Неизвестный режим записи: " + name);
+        }
+        return Durability.groupCommit(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static String format(double value) {
+        return String.format(java.util.Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Байты, переданные процессом в write-вызовы, или -1, если /proc недоступен.
+     */
+    private static long writtenBytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/io"))) {
+                if (line.startsWith("wchar:")) {
+                    return Long.parseLong(line.substring("wchar:".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Доска из size задач: десятая часть — задачи, сотая — эпики, остальное — подзадачи, поровну по эпикам.
+     * Помнит id и эпики подзадач, чтобы менять статус без чтения через менеджер, которое попало бы в историю.
+     */
+    private static class Board {
+        private int[] taskIds;
+        private int[] epicIds;
+        private int[] subtaskIds;
+        private int[] subtaskEpics;
+        private int subtaskCount;
+
+        static Board build(File backupFile, int size, TaskSerializer serializer) {
+            final Board board = new Board();
+            final int epics = Math.max(1, size / 100);
+            final int tasks = size / 10;
+            final int subtasks = Math.max(0, size - epics - tasks);
+            board.taskIds = new int[tasks];
+            board.epicIds = new int[epics];
+            board.subtaskIds = new int[Math.max(16, subtasks)];
+            board.subtaskEpics = new int[board.subtaskIds.length];
+            final FileBackedTaskManager manager = new FileBackedTaskManager(backupFile, Durability.async(), serializer);
+            try {
+                for (int i = 0; i < tasks; i++) {
+                    final Task task = new Task("Задача " + i, "Описание задачи " + i);
+                    manager.createTask(task);
+                    board.taskIds[i] = task.getId();
+                }
+                for (int i = 0; i < epics; i++) {
+                    final EpicTask epic = new EpicTask("Эпик " + i, "Описание эпика " + i);
+                    manager.createEpicTask(epic);
+                    board.epicIds[i] = epic.getId();
+                }
+                for (int i = 0; i < subtasks; i++) {
+                    board.addSubtask(manager, board.epicIds[i % epics]);
+                }
+                manager.save();
+            } finally {
+                manager.close();
+            }
+            return board;
+        }
+
+        void step(FileBackedTaskManager manager, Random random) {
+            final int percent = random.nextInt(100);
+            if (percent < READ_PERCENT) {
+                read(manager, random);
+            } else if (percent < READ_PERCENT + UPDATE_PERCENT && subtaskCount > 0) {
+                final int index = random.nextInt(subtaskCount);
+                manager.updateSubtask(new Subtask(subtaskIds[index], "Подзадача " + subtaskIds[index],
+                        "Описание подзадачи", STATUSES[random.nextInt(STATUSES.length)], subtaskEpics[index]));
+            } else {
+                addSubtask(manager, epicIds[random.nextInt(epicIds.length)]);
+            }
+        }
+
+        private void read(FileBackedTaskManager manager, Random random) {
+            final int index = random.nextInt(taskIds.length + epicIds.length + subtaskCount);
+            if (index < taskIds.length) {
+                manager.getTask(taskIds[index]);
+            } else if (index < taskIds.length + epicIds.length) {
+                manager.getEpicTask(epicIds[index - taskIds.length]);
+            } else {
+                manager.getSubtask(subtaskIds[index - taskIds.length - epicIds.length]);
+            }
+        }
+
+        private void addSubtask(FileBackedTaskManager manager, int epicId) {
+            final Subtask subtask = new Subtask("Подзадача", "Описание подзадачи", epicId);
+            manager.createSubtask(subtask);
+            if (subtaskCount == subtaskIds.length) {
+                subtaskIds = Arrays.copyOf(subtaskIds, subtaskCount * 2);
+                subtaskEpics = Arrays.copyOf(subtaskEpics, subtaskCount * 2);
+            }
+            subtaskIds[subtaskCount] = subtask.getId();
+            subtaskEpics[subtaskCount] = epicId;
+            subtaskCount++;
+        }
+    }
+}
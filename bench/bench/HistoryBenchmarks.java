@@ -0,0 +1,52 @@
+package bench;
+
+import model.Task;
+import model.TaskStatus;
+import service.InMemoryHistoryManager;
+
+/**
+ * История емкостью по умолчанию, в которую просматриваются size разных задач по кругу.
+ */
+final class HistoryBenchmarks {
+    private HistoryBenchmarks() {
+    }
+
+    abstract static class Views implements Benchmark {
+        InMemoryHistoryManager history;
+        Task[] tasks;
+        int cursor;
+
+        @Override
+        public void setUp(int size) {
+            history = new InMemoryHistoryManager();
+            tasks = new Task[size];
+            for (int i = 0; i < size; i++) {
+                tasks[i] = new Task(i + 1, "Задача " + i, "Описание задачи", TaskStatus.NEW);
+                history.add(tasks[i]);
+            }
+            cursor = 0;
+        }
+
+        Task nextTask() {
+            final Task task = tasks[cursor];
+            cursor = (cursor + 1) % tasks.length;
+            return task;
+        }
+    }
+
+    static final class Add extends Views {
+        @Override
+        public Object run() {
+            final Task task = nextTask();
+            history.add(task);
+            return task;
+        }
+    }
+
+    static final class GetHistory extends Views {
+        @Override
+        public Object run() {
+            return history.getHistory();
+        }
+    }
+}
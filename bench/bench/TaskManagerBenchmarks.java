@@ -0,0 +1,83 @@
+package bench;
+
+import model.Task;
+import model.TaskStatus;
+import service.InMemoryTaskManager;
+
+/**
+ * Операции с задачами на доске из size задач. Создание и удаление меняют размер доски,
+ * поэтому за итерацию выполняют не больше size операций, а доска перед итерацией строится заново.
+ */
+final class TaskManagerBenchmarks {
+    private TaskManagerBenchmarks() {
+    }
+
+    abstract static class Board implements Benchmark {
+        InMemoryTaskManager manager;
+        int size;
+        int cursor;
+
+        @Override
+        public void setUp(int size) {
+            manager = new InMemoryTaskManager();
+            for (int i = 0; i < size; i++) {
+                manager.createTask(new Task("Задача " + i, "Описание задачи " + i));
+            }
+            this.size = size;
+            cursor = 0;
+        }
+
+        /**
+         * Id задач доски по кругу, начиная с первой.
+         */
+        int nextId() {
+            final int id = cursor + 1;
+            cursor = (cursor + 1) % size;
+            return id;
+        }
+    }
+
+    static final class CreateTask extends Board {
+        @Override
+        public Object run() {
+            final Task task = new Task("Задача", "Описание задачи");
+            manager.createTask(task);
+            return task;
+        }
+
+        @Override
+        public int operationLimit(int size) {
+            return size;
+        }
+    }
+
+    static final class GetTask extends Board {
+        @Override
+        public Object run() {
+            return manager.getTask(nextId());
+        }
+    }
+
+    static final class UpdateTask extends Board {
+        @Override
+        public Object run() {
+            final int id = nextId();
+            final Task task = new Task(id, "Задача " + id, "Новое описание", TaskStatus.IN_PROGRESS);
+            manager.updateTask(task);
+            return task;
+        }
+    }
+
+    static final class DeleteTask extends Board {
+        @Override
+        public Object run() {
+            manager.deleteTask(nextId());
+            return manager;
+        }
+
+        @Override
+        public int operationLimit(int size) {
+            return size;
+        }
+    }
+}
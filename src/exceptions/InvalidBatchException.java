@@ -0,0 +1,7 @@
+package exceptions;
+
+public class InvalidBatchException extends RuntimeException {
+    public InvalidBatchException(String message) {
+        super(message);
+    }
+}
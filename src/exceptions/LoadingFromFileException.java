@@ -1,6 +1,10 @@
 package exceptions;
 
 public class LoadingFromFileException extends RuntimeException {
+    public LoadingFromFileException(String message) {
+        super(message);
+    }
+
     public LoadingFromFileException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -0,0 +1,267 @@
+package mappers;
+
+import exceptions.LoadingFromFileException;
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+import storage.JournalOperation;
+import storage.JournalRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Компактный двоичный формат: [varint длина][тело][CRC32 тела].
+ * В теле id — varint, тип, статус и операция — порядковые номера enum, строки — UTF-8 с varint-длиной.
+ * Буферы кодирования и декодирования переиспользуются в пределах потока.
+ */
+public class BinaryTaskSerializer implements TaskSerializer {
+    static final byte[] HEADER = {'K', 'N', 'B', 'N', 1};
+
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final JournalOperation[] OPERATIONS = JournalOperation.values();
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+    private static final ThreadLocal<byte[]> DECODE_BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+    static boolean hasHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < HEADER.length; i++) {
+            if (buffer.get(buffer.position() + i) != HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] getHeader() {
+        return HEADER.clone();
+    }
+
+    @Override
+    public void write(JournalRecord record, OutputStream out) throws IOException {
+        final ByteBuffer buffer = encodeBuffer(record);
+        buffer.clear();
+        buffer.position(MAX_VARINT_BYTES);
+        writePayload(record, buffer);
+        final int payloadLength = buffer.position() - MAX_VARINT_BYTES;
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), MAX_VARINT_BYTES, payloadLength);
+        buffer.putInt((int) crc.getValue());
+        final int end = buffer.position();
+
+        final int start = MAX_VARINT_BYTES - varintSize(payloadLength);
+        buffer.position(start);
+        putVarint(buffer, payloadLength);
+        out.write(buffer.array(), start, end - start);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int payloadLength = getVarint(buffer);
+        final int headerLength = buffer.position() - start;
+        final int remaining = buffer.remaining();
+        buffer.position(start);
+        if (payloadLength > MAX_RECORD_BYTES || payloadLength < 0 && headerLength == MAX_VARINT_BYTES) {
+            return 0;
+        }
+        if (payloadLength < 0 || remaining < payloadLength + Integer.BYTES) {
+            return -1;
+        }
+        return headerLength + payloadLength + Integer.BYTES;
+    }
+
+    @Override
+    public JournalRecord read(ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int payloadLength = getVarint(buffer);
+        if (payloadLength < 0 || payloadLength > MAX_RECORD_BYTES
+                || buffer.remaining() < payloadLength + Integer.BYTES) {
+            buffer.position(start);
+            return null;
+        }
+        final int payloadStart = buffer.position();
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(payloadStart + payloadLength));
+        if ((int) crc.getValue() != buffer.getInt(payloadStart + payloadLength)) {
+            buffer.position(start);
+            return null;
+        }
+        JournalRecord record;
+        try {
+            record = readPayload(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            buffer.position(start);
+            throw new LoadingFromFileException("Запись с верной контрольной суммой не разбирается.", e);
+        }
+        if (record == null || buffer.position() != payloadStart + payloadLength) {
+            buffer.position(start);
+            throw new LoadingFromFileException("Запись с верной контрольной суммой не разбирается.");
+        }
+        buffer.position(payloadStart + payloadLength + Integer.BYTES);
+        return record;
+    }
+
+    private static void writePayload(JournalRecord record, ByteBuffer buffer) {
+        buffer.put((byte) record.getOperation().ordinal());
+        switch (record.getOperation()) {
+            case PUT -> {
+                final Task task = record.getTask();
+                buffer.put((byte) task.getType().ordinal());
+                putVarint(buffer, task.getId());
+                buffer.put((byte) task.getStatus().ordinal());
+                putString(buffer, task.getTitle());
+                putString(buffer, task.getDescription());
+                if (task.getType() == TaskType.SUBTASK) {
+                    putVarint(buffer, ((Subtask) task).getEpicId());
+                }
+            }
+            case DELETE -> putVarint(buffer, record.getId());
+            case CLEAR -> buffer.put((byte) record.getType().ordinal());
+        }
+    }
+
+    private static JournalRecord readPayload(ByteBuffer buffer) {
+        final int operation = buffer.get();
+        if (operation < 0 || operation >= OPERATIONS.length) {
+            return null;
+        }
+        return switch (OPERATIONS[operation]) {
+            case PUT -> {
+                final TaskType type = TYPES[buffer.get()];
+                final int id = getVarint(buffer);
+                final TaskStatus status = STATUSES[buffer.get()];
+                final String title = getString(buffer);
+                final String description = getString(buffer);
+                yield JournalRecord.put(switch (type) {
+                    case TASK -> new Task(id, title, description, status);
+                    case EPIC -> new EpicTask(id, title, description, status);
+                    case SUBTASK -> new Subtask(id, title, description, status, getVarint(buffer));
+                });
+            }
+            case DELETE -> JournalRecord.delete(getVarint(buffer));
+            case CLEAR -> JournalRecord.clear(TYPES[buffer.get()]);
+        };
+    }
+
+    private static ByteBuffer encodeBuffer(JournalRecord record) {
+        int required = 64;
+        if (record.getTask() != null) {
+            required += 3 * (length(record.getTask().getTitle()) + length(record.getTask().getDescription()));
+        }
+        ByteBuffer buffer = ENCODE_BUFFER.get();
+        if (buffer.capacity() < required) {
+            buffer = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+            ENCODE_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static int length(String str) {
+        return str == null ? 0 : str.length();
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private static void putString(ByteBuffer buffer, String str) {
+        if (str == null) {
+            putVarint(buffer, 0);
+            return;
+        }
+        final int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + MAX_VARINT_BYTES);
+        final int start = buffer.position();
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        final int byteLength = buffer.position() - start;
+        final int lengthSize = varintSize(byteLength + 1);
+        if (lengthSize < MAX_VARINT_BYTES) {
+            final byte[] array = buffer.array();
+            System.arraycopy(array, start, array, lengthPosition + lengthSize, byteLength);
+        }
+        buffer.position(lengthPosition);
+        putVarint(buffer, byteLength + 1);
+        buffer.position(lengthPosition + lengthSize + byteLength);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = getVarint(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            final String str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return str;
+        }
+        byte[] bytes = DECODE_BUFFER.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            DECODE_BUFFER.set(bytes);
+        }
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -1,11 +1,51 @@
 package mappers;
 
 import model.*;
+import storage.JournalRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
 
 public class CSVFormatter {
+    private static final String LEGACY_HEADER = "ID,TYPE,TITLE,STATUS,DESCRIPTION,EPIC_ID(ONLY_FOR_SUBTASKS)";
 
     public static String getHeader() {
-        return "ID,TYPE,TITLE,STATUS,DESCRIPTION,EPIC_ID(ONLY_FOR_SUBTASKS)";
+        return LEGACY_HEADER + ",CRC32";
+    }
+
+    public static boolean isLegacyHeader(String header) {
+        return LEGACY_HEADER.equals(header);
+    }
+
+    public static String appendChecksum(String record) {
+        final long crc = checksum(record);
+        final StringBuilder line = new StringBuilder(record.length() + 9).append(record).append(',');
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            line.append(Character.forDigit((int) (crc >>> shift) & 0xF, 16));
+        }
+        return line.toString();
+    }
+
+    public static String verifyChecksum(String line) {
+        final int separator = line.lastIndexOf(',');
+        if (separator < 0 || line.length() - separator - 1 != 8) {
+            return null;
+        }
+        final String record = line.substring(0, separator);
+        try {
+            final long expected = Long.parseLong(line.substring(separator + 1), 16);
+            return expected == checksum(record) ? record : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(String record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
     }
 
     public static String taskToString(Task task) {
@@ -17,12 +57,12 @@ public class CSVFormatter {
             epicId = "";
         }
 
-        return task.getId() + "," + task.getType() + "," + task.getTitle() + "," +
-                task.getStatus() + "," + task.getDescription() + "," + epicId;
+        return task.getId() + "," + task.getType() + "," + escape(task.getTitle()) + "," +
+                task.getStatus() + "," + escape(task.getDescription()) + "," + epicId;
     }
 
     public static Task stringToTask(String str) {
-        final String[] attributes = str.split(",");
+        final String[] attributes = split(str);
         final int id = Integer.parseInt(attributes[0]);
         final TaskType taskType = TaskType.valueOf(attributes[1]);
         final String title = attributes[2];
@@ -37,4 +77,83 @@ public class CSVFormatter {
         };
     }
 
+    public static String recordToString(JournalRecord record) {
+        return switch (record.getOperation()) {
+            case PUT -> taskToString(record.getTask());
+            case DELETE -> "DELETE," + record.getId();
+            case CLEAR -> "CLEAR," + record.getType();
+        };
+    }
+
+    public static JournalRecord stringToRecord(String str) {
+        if (str.startsWith("DELETE,")) {
+            return JournalRecord.delete(Integer.parseInt(str.substring("DELETE,".length())));
+        }
+        if (str.startsWith("CLEAR,")) {
+            return JournalRecord.clear(TaskType.valueOf(str.substring("CLEAR,".length())));
+        }
+        return JournalRecord.put(stringToTask(str));
+    }
+
+    /**
+     * Экранирует обратной косой чертой запятую, перевод строки и возврат каретки,
+     * чтобы строка занимала одно поле одной строки файла.
+     */
+    static String escape(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            final String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case ',' -> "\\,";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    /**
+     * Делит строку по неэкранированным запятым и снимает экранирование с полей.
+     * Неизвестная последовательность после обратной косой черты остается как есть.
+     * Пустые поля в конце строки сохраняются: пустое описание — такое же поле, как остальные.
+     */
+    static String[] split(String str) {
+        final List<String> fields = new ArrayList<>(6);
+        final StringBuilder field = new StringBuilder();
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < str.length()) {
+                final char next = str.charAt(++i);
+                switch (next) {
+                    case '\\', ',' -> field.append(next);
+                    case 'n' -> field.append('\n');
+                    case 'r' -> field.append('\r');
+                    default -> field.append(c).append(next);
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
 }
@@ -0,0 +1,128 @@
+package mappers;
+
+import exceptions.LoadingFromFileException;
+import storage.JournalRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class CSVTaskSerializer implements TaskSerializer {
+    private static final byte[] HEADER = (CSVFormatter.getHeader() + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private final boolean checksummed;
+
+    public CSVTaskSerializer() {
+        this(true);
+    }
+
+    private CSVTaskSerializer(boolean checksummed) {
+        this.checksummed = checksummed;
+    }
+
+    static TaskSerializer detect(ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int end = lineEnd(buffer, start);
+        if (end >= 0) {
+            final String firstLine = decodeLine(buffer, start, end);
+            if (CSVFormatter.isLegacyHeader(firstLine)) {
+                buffer.position(end + 1);
+                return new CSVTaskSerializer(false);
+            }
+            if (CSVFormatter.getHeader().equals(firstLine)) {
+                buffer.position(end + 1);
+            }
+        }
+        return new CSVTaskSerializer(true);
+    }
+
+    @Override
+    public byte[] getHeader() {
+        return HEADER.clone();
+    }
+
+    @Override
+    public void write(JournalRecord record, OutputStream out) throws IOException {
+        out.write(CSVFormatter.appendChecksum(CSVFormatter.recordToString(record)).getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        int from = buffer.position();
+        int end;
+        while ((end = lineEnd(buffer, from)) >= 0) {
+            if (!isBlank(buffer, from, end)) {
+                return end + 1 - buffer.position();
+            }
+            from = end + 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public JournalRecord read(ByteBuffer buffer) {
+        final int recordStart = buffer.position();
+        while (buffer.hasRemaining()) {
+            final int start = buffer.position();
+            int end = lineEnd(buffer, start);
+            final boolean complete = end >= 0;
+            if (!complete) {
+                if (checksummed) {
+                    break;
+                }
+                end = buffer.limit();
+            }
+            final String line = decodeLine(buffer, start, end);
+            buffer.position(Math.min(end + 1, buffer.limit()));
+            if (line.isBlank()) {
+                continue;
+            }
+            final String record = checksummed ? CSVFormatter.verifyChecksum(line) : line;
+            if (record == null) {
+                break;
+            }
+            try {
+                return CSVFormatter.stringToRecord(record);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                // Без контрольной суммы оборванной может быть только последняя строка без перевода строки.
+                if (checksummed || complete) {
+                    buffer.position(recordStart);
+                    throw new LoadingFromFileException("Целая запись не разбирается: " + record, e);
+                }
+                break;
+            }
+        }
+        buffer.position(recordStart);
+        return null;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (!Character.isWhitespace(buffer.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decodeLine(ByteBuffer buffer, int from, int end) {
+        final int length = end > from && buffer.get(end - 1) == '\r' ? end - from - 1 : end - from;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + from, length, StandardCharsets.UTF_8);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
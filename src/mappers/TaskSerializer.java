@@ -0,0 +1,45 @@
+package mappers;
+
+import storage.JournalRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Формат записей снимка и журнала. Каждый файл начинается с заголовка формата,
+ * по которому {@link #detect(ByteBuffer)} выбирает нужную реализацию при загрузке.
+ */
+public interface TaskSerializer {
+    /**
+     * Наибольшая допустимая длина одной записи. Запись, заявляющая длину больше, считается поврежденной.
+     */
+    int MAX_RECORD_BYTES = 16 << 20;
+
+    byte[] getHeader();
+
+    void write(JournalRecord record, OutputStream out) throws IOException;
+
+    /**
+     * Длина в байтах записи, начинающейся с текущей позиции буфера, без чтения самой записи.
+     * Возвращает -1, если запись не поместилась в буфер целиком, и 0, если по заголовку видно,
+     * что запись повреждена.
+     */
+    int frameLength(ByteBuffer buffer);
+
+    /**
+     * Читает запись с текущей позиции буфера и сдвигает позицию за нее.
+     * Возвращает null и не сдвигает позицию, если запись оборвана или не сходится контрольная сумма.
+     * Целая запись, которая не разбирается, — это повреждение, а не оборванный хвост:
+     * тогда бросается {@link exceptions.LoadingFromFileException}.
+     */
+    JournalRecord read(ByteBuffer buffer);
+
+    static TaskSerializer detect(ByteBuffer buffer) {
+        if (BinaryTaskSerializer.hasHeader(buffer)) {
+            buffer.position(buffer.position() + BinaryTaskSerializer.HEADER.length);
+            return new BinaryTaskSerializer();
+        }
+        return CSVTaskSerializer.detect(buffer);
+    }
+}
@@ -1,16 +1,48 @@
 package model;
 
-import java.util.ArrayList;
+import util.IntObjectHashMap;
+import util.IntOrderedSet;
 
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Кроме списка подзадач эпик помнит, с каким статусом учтена каждая из них,
+ * и держит счетчики по статусам, поэтому статус эпика выводится за O(1).
+ * Привязка и отвязка подзадачи — O(1) на примитивных структурах, без оберток Integer.
+ * Подзадачи встают на место по возрастанию id, в том числе перенесенные из другого эпика,
+ * поэтому список подзадач отсортирован.
+ */
 public class EpicTask extends Task {
-    private ArrayList<Integer> subtasks = new ArrayList<>();
+    private static final int STATUS_COUNT = TaskStatus.values().length;
+
+    private IntOrderedSet subtasks;
+    private IntObjectHashMap<TaskStatus> subtaskStatuses;
+    private final int[] statusCounters = new int[STATUS_COUNT];
+    /**
+     * Id подзадач, отданные последнему виду {@link #frozenView()}. Массив не меняется: при смене привязок
+     * ссылка сбрасывается, и следующий вид получит новый массив.
+     */
+    private int[] publishedSubtaskIds;
 
     public EpicTask(String title, String description) {
         super(title, description);
+        subtasks = new IntOrderedSet();
+        subtaskStatuses = new IntObjectHashMap<>();
     }
 
     public EpicTask(Integer id, String title, String description, TaskStatus status) {
         super(id, title, description, status);
+        subtasks = new IntOrderedSet();
+        subtaskStatuses = new IntObjectHashMap<>();
+    }
+
+    /**
+     * Для {@link Frozen}: поля и счетчики без структур привязок.
+     */
+    private EpicTask(EpicTask source) {
+        super(source.id, source.title, source.description, source.status);
+        System.arraycopy(source.statusCounters, 0, statusCounters, 0, STATUS_COUNT);
     }
 
     public TaskType getType() {
@@ -18,19 +50,131 @@ public class EpicTask extends Task {
     }
 
     public void addSubtask(Integer id) {
-        subtasks.add(id);
+        addSubtask(id, TaskStatus.NEW);
+    }
+
+    public void addSubtask(Integer id, TaskStatus status) {
+        if (!subtasks.addInOrder(id)) {
+            updateSubtaskStatus(id, status);
+            return;
+        }
+        publishedSubtaskIds = null;
+        subtaskStatuses.put(id, status);
+        statusCounters[status.ordinal()]++;
+    }
+
+    /**
+     * Переносит подзадачу из одного счетчика в другой. Возвращает false, если подзадача не привязана к эпику.
+     */
+    public boolean updateSubtaskStatus(Integer id, TaskStatus status) {
+        final TaskStatus previous = subtaskStatuses.get(id);
+        if (previous == null) {
+            return false;
+        }
+        if (previous != status) {
+            statusCounters[previous.ordinal()]--;
+            statusCounters[status.ordinal()]++;
+            subtaskStatuses.put(id, status);
+        }
+        return true;
+    }
+
+    public int getSubtaskCount(TaskStatus status) {
+        return statusCounters[status.ordinal()];
+    }
+
+    public TaskStatus calculateStatus() {
+        int total = 0;
+        for (int counter : statusCounters) {
+            total += counter;
+        }
+        if (total == statusCounters[TaskStatus.NEW.ordinal()]) {
+            return TaskStatus.NEW;
+        } else if (total == statusCounters[TaskStatus.DONE.ordinal()]) {
+            return TaskStatus.DONE;
+        }
+        return TaskStatus.IN_PROGRESS;
     }
 
-    public ArrayList<Integer> getSubtasks() {
-        return subtasks;
+    /**
+     * Id подзадач по возрастанию; список только для чтения и отражает дальнейшие изменения.
+     */
+    public List<Integer> getSubtasks() {
+        return subtasks.asList();
+    }
+
+    public int[] getSubtaskIds() {
+        return subtasks.toArray();
+    }
+
+    /**
+     * Не больше limit id подзадач, больших afterId, по возрастанию.
+     */
+    public int[] getSubtaskIdsAfter(int afterId, int limit) {
+        return subtasks.after(afterId, limit);
     }
 
     public void removeLinkedSubtask(Integer id) {
-        subtasks.remove(id);
+        if (subtasks.remove(id)) {
+            publishedSubtaskIds = null;
+        }
+        final TaskStatus counted = subtaskStatuses.remove(id);
+        if (counted != null) {
+            statusCounters[counted.ordinal()]--;
+        }
     }
 
     public void deleteSubtasks() {
         subtasks.clear();
+        subtaskStatuses.clear();
+        publishedSubtaskIds = null;
+        Arrays.fill(statusCounters, 0);
+    }
+
+    @Override
+    public EpicTask copy() {
+        return new EpicTask(id, title, description, status);
+    }
+
+    /**
+     * Неизменяемый вид эпика для версий доски: поля, счетчики статусов и id подзадач без структур привязок.
+     * Массив id общий у всех видов, снятых между сменами привязок (копирование при записи),
+     * поэтому смена статуса или названия эпика не копирует его подзадачи.
+     */
+    public EpicTask frozenView() {
+        if (publishedSubtaskIds == null) {
+            publishedSubtaskIds = subtasks.toArray();
+        }
+        return new Frozen(this, publishedSubtaskIds);
+    }
+
+    /**
+     * Копия вместе с привязанными подзадачами и счетчиками статусов.
+     */
+    public EpicTask copyWithLinks() {
+        final EpicTask copy = copy();
+        copy.restoreLinksFrom(this);
+        return copy;
+    }
+
+    /**
+     * Возвращает этому эпику поля и привязки подзадач из копии, снятой {@link #copyWithLinks()}.
+     */
+    public void restoreFrom(EpicTask snapshot) {
+        title = snapshot.title;
+        description = snapshot.description;
+        status = snapshot.status;
+        restoreLinksFrom(snapshot);
+    }
+
+    private void restoreLinksFrom(EpicTask source) {
+        subtasks = new IntOrderedSet(source.subtasks);
+        subtaskStatuses = new IntObjectHashMap<>(source.subtasks.size());
+        for (int id : source.subtasks.toArray()) {
+            subtaskStatuses.put(id, source.subtaskStatuses.get(id));
+        }
+        System.arraycopy(source.statusCounters, 0, statusCounters, 0, STATUS_COUNT);
+        publishedSubtaskIds = null;
     }
 
     @Override
@@ -42,4 +186,92 @@ public class EpicTask extends Task {
                 ", status=" + status +
                 '}';
     }
+
+    /**
+     * Вид из {@link #frozenView()}: читается как эпик, а любое изменение бросает UnsupportedOperationException.
+     */
+    private static final class Frozen extends EpicTask {
+        private final int[] subtaskIds;
+
+        Frozen(EpicTask source, int[] subtaskIds) {
+            super(source);
+            this.subtaskIds = subtaskIds;
+        }
+
+        @Override
+        public List<Integer> getSubtasks() {
+            return Arrays.stream(subtaskIds).boxed().toList();
+        }
+
+        @Override
+        public int[] getSubtaskIds() {
+            return subtaskIds.clone();
+        }
+
+        @Override
+        public int[] getSubtaskIdsAfter(int afterId, int limit) {
+            int from = Arrays.binarySearch(subtaskIds, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            return Arrays.copyOfRange(subtaskIds, from, (int) Math.min((long) from + limit, subtaskIds.length));
+        }
+
+        @Override
+        public EpicTask frozenView() {
+            return this;
+        }
+
+        @Override
+        public EpicTask copyWithLinks() {
+            throw unsupported();
+        }
+
+        @Override
+        public void addSubtask(Integer id, TaskStatus status) {
+            throw unsupported();
+        }
+
+        @Override
+        public boolean updateSubtaskStatus(Integer id, TaskStatus status) {
+            throw unsupported();
+        }
+
+        @Override
+        public void removeLinkedSubtask(Integer id) {
+            throw unsupported();
+        }
+
+        @Override
+        public void deleteSubtasks() {
+            throw unsupported();
+        }
+
+        @Override
+        public void restoreFrom(EpicTask snapshot) {
+            throw unsupported();
+        }
+
+        @Override
+        public void setId(Integer id) {
+            throw unsupported();
+        }
+
+        @Override
+        public void setTitle(String title) {
+            throw unsupported();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw unsupported();
+        }
+
+        @Override
+        public void setStatus(TaskStatus newStatus) {
+            throw unsupported();
+        }
+
+        private static UnsupportedOperationException unsupported() {
+            return new UnsupportedOperationException("Вид эпика из версии доски не изменяется.");
+        }
+    }
 }
\ No newline at end of file
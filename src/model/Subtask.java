@@ -22,6 +22,15 @@ public class Subtask extends Task {
         return epicId;
     }
 
+    public void setEpicId(Integer epicId) {
+        this.epicId = epicId;
+    }
+
+    @Override
+    public Subtask copy() {
+        return new Subtask(id, title, description, status, epicId);
+    }
+
     @Override
     public String toString() {
         return "Subtask{" +
@@ -57,6 +57,10 @@ public class Task {
         this.status = newStatus;
     }
 
+    public Task copy() {
+        return new Task(id, title, description, status);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
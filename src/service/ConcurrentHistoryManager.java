@@ -0,0 +1,244 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * История для многопоточного менеджера. Просмотр не трогает упорядоченную историю и общие счетчики:
+ * он кладется в буфер полосы, выбранной по потоку, с отметкой System.nanoTime(). Когда в буфере полосы
+ * набирается DRAIN_THRESHOLD просмотров, буферы сливаются в историю в фоне; перед чтением и удалением — сразу.
+ * Отметка берется под блокировкой полосы и внутри полосы не убывает, а слияние забирает все буферы
+ * под всеми блокировками полос и применяет их k-путевым слиянием по отметкам. nanoTime — монотонные часы,
+ * общие для всех процессоров, поэтому просмотр, который произошел раньше другого, раньше попадает
+ * в историю, и последний просмотр задачи остается последним.
+ * Просмотр, прочитанный до удаления задачи и положенный в буфер после него, отбрасывается при слиянии:
+ * менеджер передает проверку, что задача еще хранится.
+ */
+public class ConcurrentHistoryManager implements HistoryManager {
+    private static final int DRAIN_THRESHOLD = 64;
+
+    private final HistoryManager history;
+    private final Executor drainExecutor;
+    private final Predicate<Task> stored;
+    private final Stripe[] stripes;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    public ConcurrentHistoryManager(HistoryManager history) {
+        this(history, ForkJoinPool.commonPool());
+    }
+
+    public ConcurrentHistoryManager(HistoryManager history, Executor drainExecutor) {
+        this(history, drainExecutor, view -> true);
+    }
+
+    /**
+     * history используется только под блокировкой слияния, поэтому может быть непотокобезопасной.
+     * stored вызывается при слиянии и отвечает, хранится ли еще задача просмотра.
+     */
+    public ConcurrentHistoryManager(HistoryManager history, Executor drainExecutor, Predicate<Task> stored) {
+        this.history = history;
+        this.drainExecutor = drainExecutor;
+        this.stored = stored;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        this.stripes = new Stripe[Integer.highestOneBit(processors * 2 - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task != null) {
+            addFrozen(task.copy());
+        }
+    }
+
+    @Override
+    public void addFrozen(Task task) {
+        if (task == null) {
+            return;
+        }
+        final Stripe stripe = stripes[(int) Thread.currentThread().threadId() & (stripes.length - 1)];
+        final int buffered;
+        stripe.lock.lock();
+        try {
+            buffered = stripe.add(task);
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (buffered >= DRAIN_THRESHOLD) {
+            scheduleDrain();
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            drain();
+            history.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(TaskType type) {
+        drainLock.lock();
+        try {
+            drain();
+            history.removeAll(type);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int limit) {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory(limit);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        drainLock.lock();
+        try {
+            drain();
+            return history.size();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drainExecutor.execute(() -> {
+                drainScheduled.set(false);
+                drainLock.lock();
+                try {
+                    drain();
+                } finally {
+                    drainLock.unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            drainScheduled.set(false);
+        }
+    }
+
+    /**
+     * Вызывается под блокировкой слияния.
+     */
+    private void drain() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        int drained = 0;
+        try {
+            for (Stripe stripe : stripes) {
+                drained += stripe.swap();
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].lock.unlock();
+            }
+        }
+        // Внутри полосы отметки уже не убывают, поэтому полосы сливаются, а не сортируются.
+        for (int i = 0; i < drained; i++) {
+            Stripe next = null;
+            for (Stripe stripe : stripes) {
+                if (stripe.drainPosition < stripe.drainSize && (next == null
+                        || stripe.drainStamps[stripe.drainPosition] < next.drainStamps[next.drainPosition])) {
+                    next = stripe;
+                }
+            }
+            final Task view = next.drainViews[next.drainPosition++];
+            if (stored.test(view)) {
+                history.addFrozen(view);
+            }
+        }
+        for (Stripe stripe : stripes) {
+            stripe.releaseDrained();
+        }
+    }
+
+    /**
+     * Два буфера на параллельных массивах: в один пишут просмотры, другой сливается в историю.
+     * Слияние меняет их местами, так что в установившемся режиме просмотр ничего не выделяет.
+     */
+    private static class Stripe {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] stamps = new long[INITIAL_CAPACITY];
+        private Task[] views = new Task[INITIAL_CAPACITY];
+        private int size;
+        private long lastStamp = Long.MIN_VALUE;
+        private long[] drainStamps = new long[INITIAL_CAPACITY];
+        private Task[] drainViews = new Task[INITIAL_CAPACITY];
+        private int drainSize;
+        private int drainPosition;
+
+        /**
+         * Возвращает, сколько просмотров теперь в буфере.
+         */
+        int add(Task view) {
+            if (size == views.length) {
+                stamps = Arrays.copyOf(stamps, size * 2);
+                views = Arrays.copyOf(views, size * 2);
+            }
+            lastStamp = Math.max(lastStamp, System.nanoTime());
+            stamps[size] = lastStamp;
+            views[size] = view;
+            return ++size;
+        }
+
+        int swap() {
+            final long[] filledStamps = stamps;
+            final Task[] filledViews = views;
+            stamps = drainStamps;
+            views = drainViews;
+            drainStamps = filledStamps;
+            drainViews = filledViews;
+            drainSize = size;
+            drainPosition = 0;
+            size = 0;
+            return drainSize;
+        }
+
+        void releaseDrained() {
+            Arrays.fill(drainViews, 0, drainSize, null);
+            drainSize = 0;
+            drainPosition = 0;
+        }
+    }
+}
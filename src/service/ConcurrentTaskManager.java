@@ -0,0 +1,343 @@
+package service;
+
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import util.ConcurrentIntObjectMap;
+import util.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Потокобезопасный менеджер. Хранилища — неблокирующие на чтение карты, поэтому get* и getAll* не берут блокировок.
+ * Записи сериализуются по полосам: эпик и все его подзадачи живут в полосе id эпика,
+ * так что изменение подзадачи и пересчет статуса эпика выполняются атомарно относительно других записей этого эпика,
+ * не останавливая остальные эпики. Массовые удаления берут все полосы по порядку.
+ * Общих мониторов на пути записи нет: версия для снимков публикуется сравнением с обменом,
+ * порядок id разбит на сегменты по хешу id, а индекс поиска — на полосы по хешу терма.
+ * Список подзадач эпика читается под блокировкой чтения его полосы.
+ * Просмотры копятся в буферах {@link ConcurrentHistoryManager}, так что чтения не спорят за историю;
+ * просмотр задачи, удаленной после чтения, при слиянии отбрасывается.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int WRITE_SEGMENTS = 16;
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public ConcurrentTaskManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public ConcurrentTaskManager(int stripes) {
+        super(ConcurrentIntObjectMap::new, WRITE_SEGMENTS);
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Количество полос блокировок должно быть положительным.");
+        }
+        this.stripes = new ReentrantReadWriteLock[stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.history = new ConcurrentHistoryManager(history, ForkJoinPool.commonPool(),
+                storedIn(allTasks, allEpicTasks, allSubtasks));
+    }
+
+    /**
+     * Проверка для слияния истории: хранится ли еще задача просмотра. Берет сами хранилища, а не this,
+     * чтобы не выпускать недостроенный менеджер из конструктора.
+     */
+    private static Predicate<Task> storedIn(IntObjectMap<Task> tasks, IntObjectMap<EpicTask> epics,
+                                            IntObjectMap<Subtask> subtasks) {
+        return view -> switch (view.getType()) {
+            case TASK -> tasks.containsKey(view.getId());
+            case EPIC -> epics.containsKey(view.getId());
+            case SUBTASK -> subtasks.containsKey(view.getId());
+        };
+    }
+
+    @Override
+    public Integer getId() {
+        return nextId.get();
+    }
+
+    @Override
+    public Integer generateId() {
+        return nextId.incrementAndGet();
+    }
+
+    /**
+     * Id выдается до блокировки, чтобы новая задача попала в свою полосу, как и ее дальнейшие изменения.
+     */
+    @Override
+    public void createTask(Task task) {
+        final int newId = generateId();
+        final ReentrantReadWriteLock.WriteLock lock = stripe(newId).writeLock();
+        lock.lock();
+        try {
+            super.createTask(task, newId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createEpicTask(EpicTask epictask) {
+        final int newId = generateId();
+        final ReentrantReadWriteLock.WriteLock lock = stripe(newId).writeLock();
+        lock.lock();
+        try {
+            super.createEpicTask(epictask, newId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        final ReentrantReadWriteLock.WriteLock lock = stripe(subtask.getEpicId()).writeLock();
+        lock.lock();
+        try {
+            super.createSubtask(subtask);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        lockAll();
+        try {
+            super.deleteAllTasks();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void deleteAllEpicTasks() {
+        lockAll();
+        try {
+            super.deleteAllEpicTasks();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        lockAll();
+        try {
+            super.deleteAllSubtasks();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void deleteTask(Integer id) {
+        final ReentrantReadWriteLock.WriteLock lock = stripe(id).writeLock();
+        lock.lock();
+        try {
+            super.deleteTask(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteEpicTask(Integer id) {
+        final ReentrantReadWriteLock.WriteLock lock = stripe(id).writeLock();
+        lock.lock();
+        try {
+            super.deleteEpicTask(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteSubtask(Integer id) {
+        while (true) {
+            final Subtask subtask = allSubtasks.get(id);
+            final ReentrantReadWriteLock.WriteLock lock =
+                    stripe(subtask == null ? id : subtask.getEpicId()).writeLock();
+            lock.lock();
+            try {
+                // Подзадачу могли удалить или заменить, пока мы ждали блокировку.
+                if (allSubtasks.get(id) == subtask) {
+                    super.deleteSubtask(id);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Subtask> getSubtasksOfEpic(Integer id) {
+        if (id == null) {
+            return super.getSubtasksOfEpic(id);
+        }
+        final ReentrantReadWriteLock.ReadLock lock = stripe(id).readLock();
+        lock.lock();
+        try {
+            return super.getSubtasksOfEpic(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Page<Subtask> getSubtasksOfEpic(Integer id, int afterId, int limit) {
+        final ReentrantReadWriteLock.ReadLock lock = stripe(id).readLock();
+        lock.lock();
+        try {
+            return super.getSubtasksOfEpic(id, afterId, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        final ReentrantReadWriteLock.WriteLock lock = stripe(task.getId()).writeLock();
+        lock.lock();
+        try {
+            super.updateTask(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * При переносе в другой эпик берет блокировки полос обоих эпиков по возрастанию номера полосы,
+     * чтобы встречные переносы не взаимоблокировались.
+     */
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        while (true) {
+            final Subtask current = allSubtasks.get(subtask.getId());
+            final Integer target = subtask.getEpicId();
+            final Integer source = current == null ? target : current.getEpicId();
+            if (source == null || target == null) {
+                // Без эпика обновление ничего не меняет: подзадачи нет или целевого эпика нет.
+                super.updateSubtask(subtask);
+                return;
+            }
+            final int first = Math.min(stripeIndex(source), stripeIndex(target));
+            final int second = Math.max(stripeIndex(source), stripeIndex(target));
+            stripes[first].writeLock().lock();
+            if (second != first) {
+                stripes[second].writeLock().lock();
+            }
+            try {
+                // Подзадачу могли удалить, заменить или перенести, пока мы ждали блокировку.
+                if (allSubtasks.get(subtask.getId()) == current) {
+                    super.updateSubtask(subtask);
+                    return;
+                }
+            } finally {
+                if (second != first) {
+                    stripes[second].writeLock().unlock();
+                }
+                stripes[first].writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void updateEpicTask(EpicTask newEpictask) {
+        final ReentrantReadWriteLock.WriteLock lock = stripe(newEpictask.getId()).writeLock();
+        lock.lock();
+        try {
+            super.updateEpicTask(newEpictask);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEpicTaskStatus(Integer id) {
+        final ReentrantReadWriteLock.WriteLock lock = stripe(id).writeLock();
+        lock.lock();
+        try {
+            super.updateEpicTaskStatus(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пакет проверяется и применяется под всеми полосами, поэтому другие записи не вклиниваются между его операциями.
+     */
+    @Override
+    public void applyBatch(List<Mutation> batch) {
+        lockAll();
+        try {
+            super.applyBatch(batch);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Открытая транзакция держит все полосы на запись до commit() или rollback(), поэтому записи
+     * остальных потоков ждут ее конца. Чтения get* и getAll* идут без блокировок и видят незафиксированные
+     * изменения; версию на момент начала транзакции другим потокам отдает только {@link #snapshot()}.
+     */
+    @Override
+    public Transaction beginTransaction() {
+        lockAll();
+        try {
+            return super.beginTransaction();
+        } catch (RuntimeException e) {
+            unlockAll();
+            throw e;
+        }
+    }
+
+    @Override
+    void commitTransaction(Transaction transaction) {
+        try {
+            super.commitTransaction(transaction);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    void rollbackTransaction(Transaction transaction) {
+        try {
+            super.rollbackTransaction(transaction);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private ReentrantReadWriteLock stripe(int id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    private int stripeIndex(int id) {
+        return (id ^ (id >>> 16)) & (stripes.length - 1);
+    }
+
+    private void lockAll() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+import storage.HistoryLog;
+import storage.JournalRecord;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * История файлового менеджера: каждый просмотр и удаление сразу дописываются в {@link HistoryLog},
+ * не дожидаясь save(). Удаление всех задач типа — одна запись CLEAR.
+ */
+class FileBackedHistoryManager implements HistoryManager {
+    private final HistoryManager history;
+    private final HistoryLog log;
+
+    FileBackedHistoryManager(HistoryManager history, HistoryLog log) {
+        this.history = history;
+        this.log = log;
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task != null) {
+            addFrozen(task.copy());
+        }
+    }
+
+    @Override
+    public void addFrozen(Task task) {
+        if (task == null) {
+            return;
+        }
+        history.addFrozen(task);
+        append(JournalRecord.put(task));
+    }
+
+    @Override
+    public void remove(int id) {
+        history.remove(id);
+        append(JournalRecord.delete(id));
+    }
+
+    @Override
+    public void removeAll(TaskType type) {
+        history.removeAll(type);
+        append(JournalRecord.clear(type));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return history.getHistory();
+    }
+
+    @Override
+    public List<Task> getHistory(int limit) {
+        return history.getHistory(limit);
+    }
+
+    @Override
+    public int size() {
+        return history.size();
+    }
+
+    /**
+     * Восстанавливает историю из файла. Просмотры задач, которых уже нет на доске
+     * (например, если удаление не успело попасть в файл истории), выбрасываются.
+     */
+    void restore(IntPredicate exists) throws IOException {
+        boolean rewrite = log.replay(record -> {
+            switch (record.getOperation()) {
+                case PUT -> history.addFrozen(record.getTask());
+                case DELETE -> history.remove(record.getId());
+                case CLEAR -> history.removeAll(record.getType());
+            }
+        });
+        for (Task task : history.getHistory()) {
+            if (!exists.test(task.getId())) {
+                history.remove(task.getId());
+                rewrite = true;
+            }
+        }
+        if (rewrite) {
+            log.rewrite(history.getHistory());
+        }
+    }
+
+    void flush() {
+        log.flush();
+    }
+
+    long getBytesWritten() {
+        return log.getBytesWritten();
+    }
+
+    void close() {
+        log.close();
+    }
+
+    private void append(JournalRecord record) {
+        log.append(record);
+        if (log.needsCompaction()) {
+            log.rewrite(history.getHistory());
+        }
+    }
+}
@@ -2,83 +2,419 @@ package service;
 
 import exceptions.LoadingFromFileException;
 import exceptions.SavingToFileException;
-import mappers.CSVFormatter;
+import mappers.CSVTaskSerializer;
+import mappers.TaskSerializer;
 import model.EpicTask;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
+import storage.Durability;
+import storage.DurabilityMode;
+import storage.HistoryLog;
+import storage.JournalRecord;
+import storage.ParallelSnapshotLoader;
+import storage.RecordReader;
+import storage.SnapshotCompactor;
+import storage.TaskJournal;
+import util.LatencyHistogram;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Состояние хранится как снимок (backupFile) плюс журнал изменений рядом с ним.
+ * Каждая мутация дописывает в журнал одну запись. Когда журнал перерастает порог,
+ * он откладывается в сторону, а свежий снимок пишется в фоне {@link SnapshotCompactor}.
+ * Когда запись журнала становится надежной, определяет {@link Durability}; в режиме async нужен {@link #flush()}.
+ * История просмотров пишется в отдельный файл {@link HistoryLog}: она не так важна, как задачи,
+ * поэтому вне режима async сбрасывается на диск группами раз в секунду, а не на каждый просмотр.
+ */
 public class FileBackedTaskManager extends InMemoryTaskManager {
-    private final File backupFile;
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 4L * 1024 * 1024;
+    private static final long PARALLEL_LOAD_THRESHOLD = 8L * 1024 * 1024;
+    private static final int PARALLEL_RELINK_THRESHOLD = 50_000;
+    private static final Durability HISTORY_DURABILITY = Durability.groupCommit(1000, 1024);
+
+    private final TaskSerializer serializer;
+    private final TaskJournal journal;
+    private final SnapshotCompactor compactor;
+    private final FileBackedHistoryManager fileHistory;
+    private final LatencyHistogram saveStateTimes = new LatencyHistogram();
+    private final LatencyHistogram saveWriteTimes = new LatencyHistogram();
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private boolean journalFormatChanged;
+    private List<JournalRecord> batchRecords;
+    private boolean ownBatch;
 
     public FileBackedTaskManager(File backupFile) {
-        this.backupFile = backupFile;
+        this(backupFile, Durability.sync());
+    }
+
+    public FileBackedTaskManager(File backupFile, Durability durability) {
+        this(backupFile, durability, new CSVTaskSerializer());
+    }
+
+    /**
+     * Начинает новую доску: прежние снимок, журнал и история в backupFile стираются, как раньше
+     * стирались первой же записью файла. Открыть существующую доску — {@link #loadFromFile(File)}.
+     */
+    public FileBackedTaskManager(File backupFile, Durability durability, TaskSerializer serializer) {
+        this(backupFile, durability, serializer, true);
+    }
+
+    private FileBackedTaskManager(File backupFile, Durability durability, TaskSerializer serializer, boolean fresh) {
+        if (fresh) {
+            startFresh(backupFile, serializer);
+        }
+        this.serializer = serializer;
+        this.journal = new TaskJournal(TaskJournal.journalFileFor(backupFile), durability, serializer);
+        this.compactor = new SnapshotCompactor(backupFile, journal.getFile(), serializer);
+        final HistoryLog historyLog = new HistoryLog(HistoryLog.historyFileFor(backupFile),
+                durability.getMode() == DurabilityMode.ASYNC ? durability : HISTORY_DURABILITY, serializer);
+        this.fileHistory = new FileBackedHistoryManager(history, historyLog);
+        this.history = fileHistory;
     }
 
-    private void save() {
-        try (BufferedWriter buffwriter = new BufferedWriter(new FileWriter(backupFile))) {
-            buffwriter.write(CSVFormatter.getHeader());
-            buffwriter.newLine();
+    /**
+     * Сначала удаляет журналы и историю, затем атомарно пишет пустой снимок: при сбое посередине
+     * на диске остается либо прежняя доска без хвоста изменений, либо новая пустая.
+     */
+    private static void startFresh(File backupFile, TaskSerializer serializer) {
+        final File journalFile = TaskJournal.journalFileFor(backupFile);
+        try {
+            Files.deleteIfExists(journalFile.toPath());
+            Files.deleteIfExists(SnapshotCompactor.retiredJournalFileFor(journalFile).toPath());
+            Files.deleteIfExists(HistoryLog.historyFileFor(backupFile).toPath());
+            SnapshotCompactor.writeAtomically(backupFile, serializer, List.of());
+        } catch (IOException e) {
+            throw new SavingToFileException("Не удалось начать новую доску в файле " + backupFile, e);
+        }
+    }
+
+    public void setCompactionThreshold(long journalBytes) {
+        this.compactionThreshold = journalBytes;
+    }
+
+    public void save() {
+        final long start = System.nanoTime();
+        compactor.awaitCompletion();
+        if (!compactor.getRetiredJournal().exists()) {
+            journal.rotateTo(compactor.getRetiredJournal());
+        }
+        final long captureStart = System.nanoTime();
+        final List<Task> state = captureState();
+        final long captured = System.nanoTime();
+        compactor.compact(state);
+        saveStateTimes.record(captured - captureStart);
+        saveWriteTimes.record(System.nanoTime() - start - (captured - captureStart));
+    }
+
+    /**
+     * Время save(), ушедшее на копирование задач в памяти, в наносекундах.
+     */
+    public LatencyHistogram.Snapshot getSaveStateTimes() {
+        return saveStateTimes.snapshot();
+    }
+
+    /**
+     * Время save(), ушедшее на файлы: ожидание фоновой компакции, смену журнала и запись снимка.
+     */
+    public LatencyHistogram.Snapshot getSaveWriteTimes() {
+        return saveWriteTimes.snapshot();
+    }
+
+    /**
+     * Время дописывания изменений в журнал — основной путь сохранения каждой мутации.
+     */
+    public LatencyHistogram.Snapshot getJournalAppendTimes() {
+        return journal.getAppendTimes();
+    }
+
+    public LatencyHistogram.Snapshot getJournalForceTimes() {
+        return journal.getForceTimes();
+    }
+
+    /**
+     * Байты, записанные в журнал, снимки и файл истории с момента создания менеджера.
+     */
+    public long getBytesWritten() {
+        return journal.getBytesWritten() + compactor.getBytesWritten() + fileHistory.getBytesWritten();
+    }
 
-            for (final Task task : getAllTasks()) {
-                buffwriter.write(CSVFormatter.taskToString(task));
-                buffwriter.newLine();
+    public void flush() {
+        journal.flush();
+        fileHistory.flush();
+    }
+
+    public void close() {
+        try {
+            compactor.close();
+        } finally {
+            try {
+                journal.close();
+            } finally {
+                fileHistory.close();
             }
+        }
+    }
+
+    void awaitCompaction() {
+        compactor.awaitCompletion();
+    }
+
+    /**
+     * Записи всего пакета копятся в памяти и уходят в журнал одним блоком после применения; записи
+     * откаченного пакета отбрасываются. Внутри транзакции пакет просто добавляет свои записи к записям транзакции.
+     * Вне транзакции блок пишет {@link #batchApplied()}.
+     */
+    @Override
+    public void applyBatch(List<Mutation> batch) {
+        if (batchRecords != null) {
+            super.applyBatch(batch);
+            return;
+        }
+        batchRecords = new ArrayList<>();
+        ownBatch = true;
+        try {
+            super.applyBatch(batch);
+        } finally {
+            batchRecords = null;
+            ownBatch = false;
+        }
+        compactIfNeeded();
+    }
 
-            for (final Task task : getAllEpicTasks()) {
-                buffwriter.write(CSVFormatter.taskToString(task));
-                buffwriter.newLine();
+    /**
+     * Пакет пишется в журнал, пока его еще можно отменить: если запись не удалась,
+     * память откатывается так же, как при сорвавшемся commit() транзакции.
+     */
+    @Override
+    void batchApplied() {
+        if (!ownBatch) {
+            return;
+        }
+        final List<JournalRecord> records = batchRecords;
+        batchRecords = null;
+        if (!records.isEmpty()) {
+            journal.appendAll(records);
+        }
+    }
+
+    /**
+     * Пока транзакция открыта, записи журнала копятся в памяти: commit() пишет их одним блоком,
+     * rollback() отбрасывает.
+     */
+    @Override
+    public Transaction beginTransaction() {
+        final Transaction transaction = super.beginTransaction();
+        batchRecords = new ArrayList<>();
+        return transaction;
+    }
+
+    @Override
+    void commitTransaction(Transaction transaction) {
+        final List<JournalRecord> records = batchRecords;
+        batchRecords = null;
+        if (!records.isEmpty()) {
+            try {
+                journal.appendAll(records);
+            } catch (RuntimeException e) {
+                super.rollbackTransaction(transaction);
+                throw e;
             }
+        }
+        super.commitTransaction(transaction);
+        compactIfNeeded();
+    }
+
+    @Override
+    void rollbackTransaction(Transaction transaction) {
+        batchRecords = null;
+        super.rollbackTransaction(transaction);
+    }
+
+    private void append(JournalRecord record) {
+        if (batchRecords != null) {
+            batchRecords.add(record);
+            return;
+        }
+        journal.append(record);
+        compactIfNeeded();
+    }
 
-            for (final Task task : getAllSubtasks()) {
-                buffwriter.write(CSVFormatter.taskToString(task));
-                buffwriter.newLine();
+    private void compactIfNeeded() {
+        if (journal.size() >= compactionThreshold && !compactor.isRunning()) {
+            if (!compactor.getRetiredJournal().exists()) {
+                journal.rotateTo(compactor.getRetiredJournal());
             }
+            compactor.compactInBackground(captureState());
+        }
+    }
 
-        } catch (IOException e) {
-            throw new SavingToFileException("Ошибка записи/сохранения задач в файл", e);
+    private List<Task> captureState() {
+        final List<Task> state = new ArrayList<>(allTasks.size() + allEpicTasks.size() + allSubtasks.size());
+        for (Task task : allTasks.values()) {
+            state.add(task.copy());
         }
+        for (EpicTask epic : allEpicTasks.values()) {
+            state.add(epic.copy());
+        }
+        for (Subtask subtask : allSubtasks.values()) {
+            state.add(subtask.copy());
+        }
+        return state;
     }
 
     public static FileBackedTaskManager loadFromFile(File file) {
-        final FileBackedTaskManager taskManager = new FileBackedTaskManager(file);
+        return loadFromFile(file, Durability.sync());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, Durability durability) {
+        return loadFromFile(file, durability, new CSVTaskSerializer());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, Durability durability, TaskSerializer serializer) {
+        final FileBackedTaskManager taskManager = new FileBackedTaskManager(file, durability, serializer, false);
 
         try {
-            final String fullFile = Files.readString(file.toPath());
-            final String[] lines = fullFile.split(System.lineSeparator());
-            int lastId = -1;
-            int lineNum = 1;
-
-            for (int i = lineNum; lineNum < lines.length; lineNum++) {
-                String currLine = lines[lineNum];
-                if (currLine.isBlank()) {
-                    break;
-                }
-                Task task = CSVFormatter.stringToTask(currLine);
-                taskManager.defineTypeAndAddToRelevantStorage(task);
-                if (lastId < task.getId()) {
-                    lastId = task.getId();
+            int lastId = taskManager.loadSnapshot(file);
+            lastId = Math.max(lastId, taskManager.replayFile(taskManager.compactor.getRetiredJournal(), false));
+            lastId = Math.max(lastId, taskManager.replayFile(taskManager.journal.getFile(), true));
+
+            taskManager.relinkSubtasks();
+            taskManager.rebuildIndexes();
+            taskManager.taskId = Math.max(lastId, 0);
+            taskManager.fileHistory.restore(id -> taskManager.allTasks.containsKey(id)
+                    || taskManager.allEpicTasks.containsKey(id) || taskManager.allSubtasks.containsKey(id));
+
+        } catch (IOException e) {
+            throw new LoadingFromFileException("Ошибка чтения/загрузки из файла.", e);
+        }
+        if (taskManager.journalFormatChanged) {
+            taskManager.save();
+        }
+        return taskManager;
+    }
+
+    private int loadSnapshot(File file) throws IOException {
+        if (file.length() < PARALLEL_LOAD_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return replayFile(file, false);
+        }
+        final List<List<Task>> chunks = new ParallelSnapshotLoader(file, ForkJoinPool.commonPool()).load();
+        final List<ForkJoinTask<Integer>> merges = new ArrayList<>();
+        for (TaskType type : TaskType.values()) {
+            merges.add(ForkJoinTask.adapt(() -> mergeChunks(chunks, type)).fork());
+        }
+        int lastId = -1;
+        for (ForkJoinTask<Integer> merge : merges) {
+            lastId = Math.max(lastId, merge.join());
+        }
+        return lastId;
+    }
+
+    private int mergeChunks(List<List<Task>> chunks, TaskType type) {
+        int lastId = -1;
+        for (List<Task> chunk : chunks) {
+            for (Task task : chunk) {
+                if (task.getType() == type) {
+                    defineTypeAndAddToRelevantStorage(task);
+                    lastId = Math.max(lastId, task.getId());
                 }
             }
+        }
+        return lastId;
+    }
 
-            for (Map.Entry<Integer, Subtask> entry : taskManager.allSubtasks.entrySet()) {
-                final Subtask subtask = entry.getValue();
-                final EpicTask epic = taskManager.allEpicTasks.get(subtask.getEpicId());
-                epic.addSubtask(subtask.getId());
+    private int replayFile(File file, boolean isLiveJournal) throws IOException {
+        int lastId = -1;
+        if (!file.exists()) {
+            return lastId;
+        }
+        final TaskSerializer fileSerializer;
+        final long validLength;
+        final long fileLength;
+        try (RecordReader reader = new RecordReader(file)) {
+            fileSerializer = reader.getSerializer();
+            JournalRecord record;
+            while ((record = reader.next()) != null) {
+                replay(record);
+                lastId = Math.max(lastId, record.getId());
             }
+            validLength = reader.getValidLength();
+            fileLength = reader.getFileLength();
+        }
+        if (isLiveJournal && fileLength > 0) {
+            if (fileSerializer.getClass() != serializer.getClass()) {
+                journalFormatChanged = true;
+            } else if (validLength < fileLength) {
+                // Сюда доходит только оборванный хвост: целая, но неразбираемая запись бросает исключение.
+                journal.truncate(validLength);
+            }
+        }
+        return lastId;
+    }
+
+    private void replay(JournalRecord record) {
+        switch (record.getOperation()) {
+            case PUT -> defineTypeAndAddToRelevantStorage(record.getTask());
+            case DELETE -> {
+                allTasks.remove(record.getId());
+                allEpicTasks.remove(record.getId());
+                allSubtasks.remove(record.getId());
+            }
+            case CLEAR -> {
+                switch (record.getType()) {
+                    case TASK -> allTasks.clear();
+                    case EPIC -> {
+                        allEpicTasks.clear();
+                        allSubtasks.clear();
+                    }
+                    case SUBTASK -> allSubtasks.clear();
+                }
+            }
+        }
+    }
 
-            taskManager.taskId = lastId;
+    private void relinkSubtasks() {
+        final boolean parallel = allSubtasks.size() >= PARALLEL_RELINK_THRESHOLD;
+        final Map<Integer, List<Subtask>> subtasksByEpic = parallel
+                ? allSubtasks.values().parallelStream().collect(Collectors.groupingByConcurrent(Subtask::getEpicId))
+                : allSubtasks.values().stream().collect(Collectors.groupingBy(Subtask::getEpicId));
 
-        } catch (IOException e) {
-            throw new LoadingFromFileException("Ошибка чтения/загрузки из файла.", e);
+        for (Map.Entry<Integer, List<Subtask>> entry : subtasksByEpic.entrySet()) {
+            if (!allEpicTasks.containsKey(entry.getKey())) {
+                for (Subtask orphan : entry.getValue()) {
+                    allSubtasks.remove(orphan.getId());
+                }
+            }
         }
-        return taskManager;
+
+        final Stream<Map.Entry<Integer, List<Subtask>>> links = parallel
+                ? subtasksByEpic.entrySet().parallelStream()
+                : subtasksByEpic.entrySet().stream();
+        links.forEach(entry -> {
+            final EpicTask epic = allEpicTasks.get(entry.getKey());
+            if (epic != null) {
+                entry.getValue().sort(Comparator.comparing(Subtask::getId));
+                for (Subtask subtask : entry.getValue()) {
+                    epic.addSubtask(subtask.getId(), subtask.getStatus());
+                }
+            }
+        });
+
+        final Stream<EpicTask> epics = parallel
+                ? allEpicTasks.values().parallelStream()
+                : allEpicTasks.values().stream();
+        epics.forEach(epic -> epic.setStatus(epic.calculateStatus()));
     }
 
     private void defineTypeAndAddToRelevantStorage(Task task) {
@@ -92,73 +428,80 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     @Override
     public void createTask(Task task) {
         super.createTask(task);
-        save();
+        append(JournalRecord.put(task));
     }
 
     @Override
     public void createSubtask(Subtask subtask) {
         super.createSubtask(subtask);
-        save();
+        append(JournalRecord.put(subtask));
     }
 
     @Override
     public void createEpicTask(EpicTask epictask) {
         super.createEpicTask(epictask);
-        save();
+        append(JournalRecord.put(epictask));
     }
 
     @Override
     public void deleteAllTasks() {
         super.deleteAllTasks();
-        save();
+        append(JournalRecord.clear(TaskType.TASK));
     }
 
     @Override
     public void deleteAllEpicTasks() {
         super.deleteAllEpicTasks();
-        save();
+        append(JournalRecord.clear(TaskType.EPIC));
     }
 
     @Override
     public void deleteAllSubtasks() {
         super.deleteAllSubtasks();
-        save();
+        append(JournalRecord.clear(TaskType.SUBTASK));
     }
 
     @Override
     public void deleteTask(Integer id) {
         super.deleteTask(id);
-        save();
+        append(JournalRecord.delete(id));
     }
 
     @Override
     public void deleteEpicTask(Integer id) {
         super.deleteEpicTask(id);
-        save();
+        append(JournalRecord.delete(id));
     }
 
     @Override
     public void deleteSubtask(Integer id) {
         super.deleteSubtask(id);
-        save();
+        append(JournalRecord.delete(id));
     }
 
     @Override
     public void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        if (allTasks.containsKey(task.getId())) {
+            append(JournalRecord.put(task));
+        }
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
         super.updateSubtask(subtask);
-        save();
+        if (allSubtasks.containsKey(subtask.getId())) {
+            append(JournalRecord.put(subtask));
+        }
     }
 
     @Override
     public void updateEpicTask(EpicTask epic) {
         super.updateEpicTask(epic);
-        save();
+        final EpicTask currEpicTask = allEpicTasks.get(epic.getId());
+        if (currEpicTask != null) {
+            append(JournalRecord.put(currEpicTask));
+        }
     }
 
 }
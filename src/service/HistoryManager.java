@@ -1,13 +1,37 @@
 package service;
 
 import model.Task;
+import model.TaskType;
 
 import java.util.List;
 
 public interface HistoryManager {
+    /**
+     * Запоминает копию задачи: дальнейшие изменения объекта не попадут в историю.
+     */
     void add(Task task);
 
+    /**
+     * Запоминает ссылку на версию задачи, которую никто больше не изменяет, без копирования.
+     */
+    void addFrozen(Task task);
+
     void remove(int id);
 
+    /**
+     * Удаляет из истории все задачи типа type, например после удаления всех задач этого типа с доски.
+     */
+    void removeAll(TaskType type);
+
     List<Task> getHistory();
+
+    /**
+     * Число задач в истории, без копирования самой истории.
+     */
+    int size();
+
+    /**
+     * Не больше limit последних просмотров, от старых к новым.
+     */
+    List<Task> getHistory(int limit);
 }
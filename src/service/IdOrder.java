@@ -0,0 +1,176 @@
+package service;
+
+import model.Task;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntPredicate;
+
+/**
+ * Id задач одного типа в порядке возрастания. Id делятся по хешу на сегменты, и у каждого сегмента свой монитор,
+ * поэтому параллельные писатели спорят за порядок, только если их id попали в один сегмент.
+ * Сегмент — отсортированный int[], в который новые id дописываются в конец. Удаление только считает мертвые id,
+ * а сами они выбрасываются разом, когда их становится больше живых, поэтому обход проверяет по хранилищу,
+ * жив ли id. Выборка после курсора сливает ответы сегментов по возрастанию.
+ */
+class IdOrder {
+    private final Segment[] segments;
+
+    IdOrder(IntPredicate isLive) {
+        this(isLive, 1);
+    }
+
+    IdOrder(IntPredicate isLive, int segmentCount) {
+        segments = new Segment[segmentCount == 1 ? 1 : Integer.highestOneBit(segmentCount - 1) << 1];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(isLive);
+        }
+    }
+
+    void add(int id) {
+        segment(id).add(id);
+    }
+
+    void remove(int id) {
+        segment(id).remove();
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    void rebuild(Collection<? extends Task> tasks) {
+        if (segments.length == 1) {
+            segments[0].rebuild(tasks.stream().mapToInt(Task::getId).toArray());
+            return;
+        }
+        final int[][] ids = new int[segments.length][];
+        final int[] sizes = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            ids[i] = new int[16];
+        }
+        for (Task task : tasks) {
+            final int index = index(task.getId());
+            if (sizes[index] == ids[index].length) {
+                ids[index] = Arrays.copyOf(ids[index], sizes[index] * 2);
+            }
+            ids[index][sizes[index]++] = task.getId();
+        }
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].rebuild(Arrays.copyOf(ids[i], sizes[i]));
+        }
+    }
+
+    /**
+     * Не более limit живых id, больших afterId, по возрастанию.
+     */
+    int[] after(int afterId, int limit) {
+        if (segments.length == 1) {
+            return segments[0].after(afterId, limit);
+        }
+        final int[][] found = new int[segments.length][];
+        final int[] heads = new int[segments.length];
+        long total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            found[i] = segments[i].after(afterId, limit);
+            total += found[i].length;
+        }
+        final int[] merged = new int[(int) Math.min(total, limit)];
+        for (int count = 0; count < merged.length; count++) {
+            int smallest = -1;
+            for (int i = 0; i < found.length; i++) {
+                if (heads[i] < found[i].length
+                        && (smallest < 0 || found[i][heads[i]] < found[smallest][heads[smallest]])) {
+                    smallest = i;
+                }
+            }
+            merged[count] = found[smallest][heads[smallest]++];
+        }
+        return merged;
+    }
+
+    private Segment segment(int id) {
+        return segments[index(id)];
+    }
+
+    private int index(int id) {
+        return (id ^ (id >>> 16)) & (segments.length - 1);
+    }
+
+    private static class Segment {
+        private final IntPredicate isLive;
+        private int[] ids = new int[16];
+        private int size;
+        private int dead;
+
+        Segment(IntPredicate isLive) {
+            this.isLive = isLive;
+        }
+
+        synchronized void add(int id) {
+            int position = size;
+            if (size > 0 && ids[size - 1] >= id) {
+                position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return;
+                }
+                position = -position - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        synchronized void remove() {
+            if (++dead > size - dead) {
+                compact();
+            }
+        }
+
+        synchronized void clear() {
+            ids = new int[16];
+            size = 0;
+            dead = 0;
+        }
+
+        synchronized void rebuild(int[] unsorted) {
+            ids = Arrays.copyOf(unsorted, Math.max(16, unsorted.length));
+            size = unsorted.length;
+            Arrays.sort(ids, 0, size);
+            dead = 0;
+        }
+
+        synchronized int[] after(int afterId, int limit) {
+            int position = Arrays.binarySearch(ids, 0, size, afterId);
+            position = position >= 0 ? position + 1 : -position - 1;
+            final int[] found = new int[Math.min(limit, size - position)];
+            int count = 0;
+            while (position < size && count < found.length) {
+                final int id = ids[position++];
+                if (isLive.test(id)) {
+                    found[count++] = id;
+                }
+            }
+            return count == found.length ? found : Arrays.copyOf(found, count);
+        }
+
+        private void compact() {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (isLive.test(ids[i])) {
+                    ids[live++] = ids[i];
+                }
+            }
+            size = live;
+            dead = 0;
+            if (ids.length > 64 && size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, Math.max(16, size * 2));
+            }
+        }
+    }
+}
@@ -1,37 +1,87 @@
 package service;
 
 import model.Task;
+import model.TaskType;
+import util.IntObjectHashMap;
 
-import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 
+/**
+ * История просмотров ограничена емкостью: когда она заполнена, новый просмотр вытесняет самый старый.
+ * Узлы списка не выбрасываются: повторный просмотр переносит узел задачи в конец, вытесненный узел
+ * сразу занимает новый просмотр, а узлы удаленных задач ждут в пуле. Узел хранит ссылку на неизменяемую
+ * версию задачи, копии создаются только при чтении истории. Счетчики по типам позволяют removeAll
+ * не обходить список, если задач этого типа в истории нет; иначе обход ограничен емкостью, а не размером доски.
+ */
 public class InMemoryHistoryManager implements HistoryManager {
-    private Map<Integer, Node> historyMap = new HashMap<>();
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final IntObjectHashMap<Node> historyMap = new IntObjectHashMap<>();
+    private final int[] typeCounts = new int[TaskType.values().length];
     private Node head;
     private Node tail;
+    private Node freeNodes;
+
+    public InMemoryHistoryManager() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость истории должна быть положительной.");
+        }
+        this.capacity = capacity;
+    }
 
-    private void linkLast(Task task) {
-        Node newNode = new Node(tail, task, null);
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void linkLast(Node node) {
+        node.prev = tail;
+        node.next = null;
         if (tail == null) {
-            head = newNode;
+            head = node;
         } else {
-            tail.next = newNode;
+            tail.next = node;
         }
-        tail = newNode;
+        tail = node;
     }
 
     @Override
     public void add(Task task) {
         if (task != null) {
-            int id = task.getId();
-            Task savedTask = new Task(task.getTitle(), task.getDescription());
-            savedTask.setId(id);
-            removeNode(historyMap.get(id));
-            linkLast(savedTask);
-            historyMap.put(id, tail);
+            addFrozen(task.copy());
+        }
+    }
+
+    @Override
+    public void addFrozen(Task task) {
+        if (task == null) {
+            return;
+        }
+        final int id = task.getId();
+        Node node = historyMap.get(id);
+        if (node != null) {
+            removeNode(node);
+            typeCounts[node.data.getType().ordinal()]--;
+        } else {
+            if (historyMap.size() == capacity) {
+                node = head;
+                historyMap.remove(node.id);
+                removeNode(node);
+                typeCounts[node.data.getType().ordinal()]--;
+            } else {
+                node = takeFreeNode();
+            }
+            node.id = id;
+            historyMap.put(id, node);
         }
+        node.data = task;
+        typeCounts[task.getType().ordinal()]++;
+        linkLast(node);
     }
 
     private void removeNode(Node node) {
@@ -43,6 +93,7 @@ public class InMemoryHistoryManager implements HistoryManager {
                 tail = null;
             } else if (node == head) {
                 head = nextNode;
+                nextNode.prev = null;
             } else if (node == tail) {
                 tail = prevNode;
                 prevNode.next = null;
@@ -53,33 +104,97 @@ public class InMemoryHistoryManager implements HistoryManager {
         }
     }
 
+    private Node takeFreeNode() {
+        final Node node = freeNodes;
+        if (node == null) {
+            return new Node();
+        }
+        freeNodes = node.next;
+        return node;
+    }
+
     @Override
     public void remove(int id) {
-        removeNode(historyMap.get(id));
-        historyMap.remove(id);
+        final Node node = historyMap.remove(id);
+        if (node != null) {
+            removeNode(node);
+            release(node);
+        }
+    }
+
+    @Override
+    public void removeAll(TaskType type) {
+        if (typeCounts[type.ordinal()] == 0) {
+            return;
+        }
+        if (typeCounts[type.ordinal()] == historyMap.size()) {
+            while (head != null) {
+                final Node node = head;
+                head = node.next;
+                release(node);
+            }
+            tail = null;
+            historyMap.clear();
+            return;
+        }
+        Node currNode = head;
+        while (typeCounts[type.ordinal()] > 0) {
+            final Node nextNode = currNode.next;
+            if (currNode.data.getType() == type) {
+                historyMap.remove(currNode.id);
+                removeNode(currNode);
+                release(currNode);
+            }
+            currNode = nextNode;
+        }
+    }
+
+    private void release(Node node) {
+        typeCounts[node.data.getType().ordinal()]--;
+        node.data = null;
+        node.prev = null;
+        node.next = freeNodes;
+        freeNodes = node;
+    }
+
+    @Override
+    public int size() {
+        return historyMap.size();
     }
 
     @Override
     public List<Task> getHistory() {
-        List<Task> historyList = new ArrayList<>();
+        List<Task> historyList = new ArrayList<>(historyMap.size());
         Node currNode = head;
         while (currNode != null) {
-            historyList.add(currNode.data);
+            historyList.add(currNode.data.copy());
             currNode = currNode.next;
         }
         return historyList;
     }
 
+    /**
+     * Последние limit просмотров от старых к новым; список обходится с хвоста, не дальше limit узлов.
+     */
+    @Override
+    public List<Task> getHistory(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Количество просмотров не может быть отрицательным.");
+        }
+        Task[] recent = new Task[Math.min(limit, historyMap.size())];
+        Node currNode = tail;
+        for (int i = recent.length - 1; i >= 0; i--) {
+            recent[i] = currNode.data.copy();
+            currNode = currNode.prev;
+        }
+        return new ArrayList<>(List.of(recent));
+    }
+
     private static class Node {
+        int id;
         Task data;
         Node prev;
         Node next;
-
-        Node(Node prev, Task data, Node next) {
-            this.prev = prev;
-            this.data = data;
-            this.next = next;
-        }
     }
 
 }
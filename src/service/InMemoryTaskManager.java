@@ -1,27 +1,78 @@
 package service;
 
+import exceptions.InvalidBatchException;
 import model.EpicTask;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskType;
+import util.IntObjectHashMap;
+import util.IntObjectMap;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 public class InMemoryTaskManager implements TaskManager {
+    private static final int STREAM_PAGE_SIZE = 256;
 
-    protected HashMap<Integer, Task> allTasks = new HashMap<>();
-    protected HashMap<Integer, EpicTask> allEpicTasks = new HashMap<>();
-    protected HashMap<Integer, Subtask> allSubtasks = new HashMap<>();
+    protected IntObjectMap<Task> allTasks;
+    protected IntObjectMap<EpicTask> allEpicTasks;
+    protected IntObjectMap<Subtask> allSubtasks;
     protected HistoryManager history = Managers.getDefaultHistory();
-    protected Integer taskId = 0;
+    protected int taskId = 0;
+    final StatusIndex statusIndex;
+    final SearchIndex searchIndex;
+    final IdOrder taskOrder;
+    final IdOrder epicOrder;
+    final IdOrder subtaskOrder;
+    private boolean statusVerification;
+    private volatile Transaction transaction;
+    private final AtomicReference<TaskSnapshot> snapshot = new AtomicReference<>(TaskSnapshot.EMPTY);
+    private final ThreadLocal<List<UnaryOperator<TaskSnapshot>>> pendingChanges = new ThreadLocal<>();
+    private Set<Integer> deferredEpicStatuses;
+    private final AtomicLong epicStatusRecomputations = new AtomicLong();
+
+    public InMemoryTaskManager() {
+        this(IntObjectHashMap::new, 1);
+    }
+
+    /**
+     * Наследник выбирает реализацию хранилищ и корзин индекса статусов, например потокобезопасную,
+     * и число сегментов, на которые делятся порядок id и индекс поиска, чтобы параллельные писатели
+     * не сходились на одном мониторе.
+     */
+    protected InMemoryTaskManager(IntMapFactory mapFactory, int writeSegments) {
+        allTasks = mapFactory.create();
+        allEpicTasks = mapFactory.create();
+        allSubtasks = mapFactory.create();
+        statusIndex = new StatusIndex(mapFactory::create);
+        searchIndex = new SearchIndex(mapFactory::create, writeSegments);
+        taskOrder = new IdOrder(id -> allTasks.containsKey(id), writeSegments);
+        epicOrder = new IdOrder(id -> allEpicTasks.containsKey(id), writeSegments);
+        subtaskOrder = new IdOrder(id -> allSubtasks.containsKey(id), writeSegments);
+    }
 
     @Override
     public List<Task> getHistory() {
         return history.getHistory();
     }
 
+    @Override
+    public List<Task> getHistory(int limit) {
+        return history.getHistory(limit);
+    }
+
     @Override
     public Integer getId() {
         return taskId;
@@ -34,26 +85,47 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void createTask(Task task) {
-        Integer newId = generateId();
+        createTask(task, generateId());
+    }
+
+    /**
+     * Добавляет задачу под уже выданным id: наследник может выдать id заранее, чтобы взять блокировку по нему.
+     */
+    protected void createTask(Task task, int newId) {
+        touch(TaskType.TASK, newId);
         task.setId(newId);
         allTasks.put(newId, task);
+        indexTask(task);
     }
 
     @Override
     public void createSubtask(Subtask subtask) {
-        Integer newId = generateId();
-        subtask.setId(newId);
-        EpicTask epicTask = allEpicTasks.get(subtask.getEpicId());
-        epicTask.addSubtask(newId);
-        allSubtasks.put(newId, subtask);
-        updateEpicTaskStatus(subtask.getEpicId());
+        boolean outermost = beginChange();
+        try {
+            Integer newId = generateId();
+            touch(TaskType.SUBTASK, newId);
+            touch(TaskType.EPIC, subtask.getEpicId());
+            subtask.setId(newId);
+            EpicTask epicTask = allEpicTasks.get(subtask.getEpicId());
+            epicTask.addSubtask(newId, subtask.getStatus());
+            allSubtasks.put(newId, subtask);
+            indexTask(subtask);
+            updateEpicTaskStatus(subtask.getEpicId());
+        } finally {
+            endChange(outermost);
+        }
     }
 
     @Override
     public void createEpicTask(EpicTask epictask) {
-        Integer newId = generateId();
+        createEpicTask(epictask, generateId());
+    }
+
+    protected void createEpicTask(EpicTask epictask, int newId) {
+        touch(TaskType.EPIC, newId);
         epictask.setId(newId);
         allEpicTasks.put(newId, epictask);
+        indexTask(epictask);
     }
 
     @Override
@@ -71,94 +143,229 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(allSubtasks.values());
     }
 
+    @Override
+    public ArrayList<Task> getByType(TaskType type) {
+        return switch (type) {
+            case TASK -> new ArrayList<>(allTasks.values());
+            case EPIC -> new ArrayList<>(allEpicTasks.values());
+            case SUBTASK -> new ArrayList<>(allSubtasks.values());
+        };
+    }
+
+    @Override
+    public ArrayList<Task> getByStatus(TaskType type, TaskStatus status) {
+        return new ArrayList<>(statusIndex.get(type, status));
+    }
+
+    @Override
+    public int countByStatus(TaskType type, TaskStatus status) {
+        return statusIndex.count(type, status);
+    }
+
+    @Override
+    public ArrayList<Task> search(String query, int limit) {
+        ArrayList<Task> found = new ArrayList<>();
+        for (int id : searchIndex.search(query, limit)) {
+            Task task = allTasks.get(id);
+            if (task == null) {
+                task = allEpicTasks.get(id);
+            }
+            if (task == null) {
+                task = allSubtasks.get(id);
+            }
+            if (task != null) {
+                found.add(task);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Page<Task> getTasks(int afterId, int limit) {
+        return page(taskOrder, allTasks, afterId, limit);
+    }
+
+    @Override
+    public Page<EpicTask> getEpicTasks(int afterId, int limit) {
+        return page(epicOrder, allEpicTasks, afterId, limit);
+    }
+
+    @Override
+    public Page<Subtask> getSubtasks(int afterId, int limit) {
+        return page(subtaskOrder, allSubtasks, afterId, limit);
+    }
+
+    @Override
+    public Page<Subtask> getSubtasksOfEpic(Integer id, int afterId, int limit) {
+        checkPageLimit(limit);
+        List<Subtask> items = new ArrayList<>();
+        EpicTask epictask = allEpicTasks.get(id);
+        if (epictask == null) {
+            return new Page<>(items, afterId, false);
+        }
+        int[] subtaskIds = epictask.getSubtaskIdsAfter(afterId, (int) Math.min((long) limit + 1, Integer.MAX_VALUE));
+        int count = Math.min(subtaskIds.length, limit);
+        for (int i = 0; i < count; i++) {
+            items.add(allSubtasks.get(subtaskIds[i]));
+        }
+        return new Page<>(items, count == 0 ? afterId : subtaskIds[count - 1], subtaskIds.length > limit);
+    }
+
+    @Override
+    public Stream<Task> streamTasks() {
+        return Page.stream(afterId -> getTasks(afterId, STREAM_PAGE_SIZE));
+    }
+
+    @Override
+    public Stream<EpicTask> streamEpicTasks() {
+        return Page.stream(afterId -> getEpicTasks(afterId, STREAM_PAGE_SIZE));
+    }
+
+    @Override
+    public Stream<Subtask> streamSubtasks() {
+        return Page.stream(afterId -> getSubtasks(afterId, STREAM_PAGE_SIZE));
+    }
+
+    @Override
+    public Stream<Subtask> streamSubtasksOfEpic(Integer id) {
+        return Page.stream(afterId -> getSubtasksOfEpic(id, afterId, STREAM_PAGE_SIZE));
+    }
+
+    /**
+     * Как и раньше, для id null возвращает null: ключи карт — примитивы, поэтому null проверяется здесь.
+     */
     @Override
     public Task getTask(Integer id) {
-        Task requestedTask = allTasks.get(id);
-        history.add(requestedTask);
+        Task requestedTask = id == null ? null : allTasks.get(id);
+        recordView(TaskType.TASK, requestedTask);
         return requestedTask;
     }
 
     @Override
     public EpicTask getEpicTask(Integer id) {
-        EpicTask requestedTask = allEpicTasks.get(id);
-        history.add(requestedTask);
+        EpicTask requestedTask = id == null ? null : allEpicTasks.get(id);
+        recordView(TaskType.EPIC, requestedTask);
         return requestedTask;
     }
 
     @Override
     public Subtask getSubtask(Integer id) {
-        Subtask requestedTask = allSubtasks.get(id);
-        history.add(requestedTask);
+        Subtask requestedTask = id == null ? null : allSubtasks.get(id);
+        recordView(TaskType.SUBTASK, requestedTask);
         return requestedTask;
     }
 
+    /**
+     * В историю уходит ссылка на копию задачи из текущей версии, поэтому просмотр ничего не копирует.
+     */
+    private void recordView(TaskType type, Task task) {
+        if (task == null) {
+            return;
+        }
+        Task frozen = snapshot.get().frozen(type, task.getId());
+        if (frozen != null) {
+            history.addFrozen(frozen);
+        } else {
+            history.add(task);
+        }
+    }
+
     @Override
     public void deleteAllTasks() {
-        for (int id : allTasks.keySet()) {
-            history.remove(id);
-        }
+        touchAll(TaskType.TASK);
+        history.removeAll(TaskType.TASK);
         allTasks.clear();
+        unindexAll(TaskType.TASK);
     }
 
     @Override
     public void deleteAllEpicTasks() {
-        for (int id : allSubtasks.keySet()) {
-            history.remove(id);
-        }
-
-        for (int id : allEpicTasks.keySet()) {
-            history.remove(id);
+        boolean outermost = beginChange();
+        try {
+            touchAll(TaskType.SUBTASK);
+            touchAll(TaskType.EPIC);
+            history.removeAll(TaskType.SUBTASK);
+            history.removeAll(TaskType.EPIC);
+            allSubtasks.clear();
+            allEpicTasks.clear();
+            unindexAll(TaskType.SUBTASK);
+            unindexAll(TaskType.EPIC);
+        } finally {
+            endChange(outermost);
         }
-
-        allSubtasks.clear();
-        allEpicTasks.clear();
     }
 
     @Override
     public void deleteAllSubtasks() {
-        for (EpicTask epictask : allEpicTasks.values()) {
-            epictask.deleteSubtasks();
-            epictask.setStatus(TaskStatus.NEW);
-        }
+        boolean outermost = beginChange();
+        try {
+            for (EpicTask epictask : allEpicTasks.values()) {
+                touch(TaskType.EPIC, epictask.getId());
+                epictask.deleteSubtasks();
+                epictask.setStatus(TaskStatus.NEW);
+                statusIndex.reindex(epictask);
+                publish(snapshot -> snapshot.with(epictask));
+            }
 
-        for (int id : allSubtasks.keySet()) {
-            history.remove(id);
+            touchAll(TaskType.SUBTASK);
+            history.removeAll(TaskType.SUBTASK);
+            allSubtasks.clear();
+            unindexAll(TaskType.SUBTASK);
+        } finally {
+            endChange(outermost);
         }
-
-        allSubtasks.clear();
     }
 
     @Override
     public void deleteTask(Integer id) {
+        touch(TaskType.TASK, id);
         allTasks.remove(id);
+        unindexTask(TaskType.TASK, id);
         history.remove(id);
     }
 
     @Override
     public void deleteEpicTask(Integer id) {
-        for (Integer subtaskId : allEpicTasks.get(id).getSubtasks()) {
-            allSubtasks.remove(subtaskId);
-            history.remove(subtaskId);
+        boolean outermost = beginChange();
+        try {
+            touch(TaskType.EPIC, id);
+            for (int subtaskId : allEpicTasks.get(id).getSubtaskIds()) {
+                touch(TaskType.SUBTASK, subtaskId);
+                allSubtasks.remove(subtaskId);
+                unindexTask(TaskType.SUBTASK, subtaskId);
+                history.remove(subtaskId);
+            }
+            allEpicTasks.remove(id);
+            unindexTask(TaskType.EPIC, id);
+            history.remove(id);
+        } finally {
+            endChange(outermost);
         }
-        allEpicTasks.remove(id);
-        history.remove(id);
     }
 
     @Override
     public void deleteSubtask(Integer id) {
-        int epicId = allSubtasks.get(id).getEpicId();
-        allEpicTasks.get(epicId).removeLinkedSubtask(id);
-        allSubtasks.remove(id);
-        history.remove(id);
-        updateEpicTaskStatus(epicId);
+        boolean outermost = beginChange();
+        try {
+            int epicId = allSubtasks.get(id).getEpicId();
+            touch(TaskType.SUBTASK, id);
+            touch(TaskType.EPIC, epicId);
+            allEpicTasks.get(epicId).removeLinkedSubtask(id);
+            allSubtasks.remove(id);
+            unindexTask(TaskType.SUBTASK, id);
+            history.remove(id);
+            updateEpicTaskStatus(epicId);
+        } finally {
+            endChange(outermost);
+        }
     }
 
     @Override
     public ArrayList<Subtask> getSubtasksOfEpic(Integer id) {
         ArrayList<Subtask> subtasksOfEpic = new ArrayList<>();
-        EpicTask epictask = allEpicTasks.get(id);
+        EpicTask epictask = id == null ? null : allEpicTasks.get(id);
         if (epictask != null) {
-            for (Integer subtaskId : allEpicTasks.get(id).getSubtasks()) {
+            for (int subtaskId : epictask.getSubtaskIds()) {
                 subtasksOfEpic.add(allSubtasks.get(subtaskId));
             }
         }
@@ -168,55 +375,535 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void updateTask(Task task) {
         if (allTasks.containsKey(task.getId())) {
+            touch(TaskType.TASK, task.getId());
             allTasks.put(task.getId(), task);
+            reindexTask(task);
         }
     }
 
+    /**
+     * Подзадачу можно перенести в другой эпик: она отвязывается от прежнего, привязывается к новому,
+     * и статусы обоих эпиков пересчитываются. Перенос в несуществующий эпик игнорируется,
+     * как и обновление несуществующей подзадачи.
+     */
     @Override
     public void updateSubtask(Subtask subtask) {
-        if (allSubtasks.containsKey(subtask.getId())) {
-            Integer epicID = subtask.getEpicId();
+        Subtask current = allSubtasks.get(subtask.getId());
+        if (current == null) {
+            return;
+        }
+        Integer epicID = subtask.getEpicId();
+        EpicTask epictask = epicID == null ? null : allEpicTasks.get(epicID);
+        if (epictask == null) {
+            return;
+        }
+        Integer previousEpicID = current.getEpicId();
+        boolean moved = !epicID.equals(previousEpicID);
+        boolean outermost = beginChange();
+        try {
+            touch(TaskType.SUBTASK, subtask.getId());
+            touch(TaskType.EPIC, epicID);
+            if (moved) {
+                touch(TaskType.EPIC, previousEpicID);
+                EpicTask previous = allEpicTasks.get(previousEpicID);
+                if (previous != null) {
+                    previous.removeLinkedSubtask(subtask.getId());
+                }
+                epictask.addSubtask(subtask.getId(), subtask.getStatus());
+            } else {
+                epictask.updateSubtaskStatus(subtask.getId(), subtask.getStatus());
+            }
             allSubtasks.put(subtask.getId(), subtask);
+            reindexTask(subtask);
             updateEpicTaskStatus(epicID);
+            if (moved) {
+                updateEpicTaskStatus(previousEpicID);
+            }
+        } finally {
+            endChange(outermost);
         }
     }
 
     @Override
     public void updateEpicTask(EpicTask newEpictask) {
         if (allEpicTasks.containsKey(newEpictask.getId())) {
+            touch(TaskType.EPIC, newEpictask.getId());
             EpicTask currEpicTask = allEpicTasks.get(newEpictask.getId());
             currEpicTask.setTitle(newEpictask.getTitle());
             currEpicTask.setDescription(newEpictask.getDescription());
+            searchIndex.add(currEpicTask);
+            publish(snapshot -> snapshot.with(currEpicTask));
         }
     }
 
+    /**
+     * В режиме проверки каждый пересчет статуса эпика сверяет счетчики с полным обходом подзадач.
+     */
+    public void setStatusVerification(boolean enabled) {
+        statusVerification = enabled;
+    }
+
     @Override
     public void updateEpicTaskStatus(Integer id) {
+        if (deferredEpicStatuses != null) {
+            deferredEpicStatuses.add(id);
+            return;
+        }
         EpicTask epictask = allEpicTasks.get(id);
         if (epictask != null) {
-            ArrayList<Subtask> subtasksOfEpic = getSubtasksOfEpic(id);
-            int subtasksOfEpicSize = subtasksOfEpic.size();
-            int newSubtaskCounter = 0;
-            int doneSubtaskCounter = 0;
-            if (subtasksOfEpicSize == 0) {
-                epictask.setStatus(TaskStatus.NEW);
+            touch(TaskType.EPIC, id);
+            epicStatusRecomputations.incrementAndGet();
+            TaskStatus status = epictask.calculateStatus();
+            if (statusVerification) {
+                TaskStatus expected = recalculateEpicTaskStatus(id);
+                if (status != expected) {
+                    throw new IllegalStateException("Счетчики статусов эпика id: " + id
+                            + " разошлись с подзадачами: " + status + " вместо " + expected + ".");
+                }
+            }
+            boolean changed = epictask.getStatus() != status;
+            epictask.setStatus(status);
+            statusIndex.reindex(epictask);
+            if (changed) {
+                publish(snapshot -> snapshot.with(epictask));
+            }
+        }
+    }
+
+    /**
+     * Сколько раз пересчитывался статус эпика; отложенные в пакете пересчеты считаются один раз.
+     */
+    public long getEpicStatusRecomputations() {
+        return epicStatusRecomputations.get();
+    }
+
+    public int getHistorySize() {
+        return history.size();
+    }
+
+    @Override
+    public Transaction beginTransaction() {
+        if (transaction != null) {
+            throw new IllegalStateException("Транзакция уже открыта.");
+        }
+        transaction = new Transaction(this, snapshot.get());
+        return transaction;
+    }
+
+    /**
+     * Открытая в другом потоке транзакция не видна: до ее commit() возвращается версия на момент ее начала.
+     */
+    @Override
+    public TaskSnapshot snapshot() {
+        Transaction tx = transaction;
+        if (tx != null && !tx.isOwnedByCurrentThread()) {
+            return tx.getBaseSnapshot();
+        }
+        return snapshot.get();
+    }
+
+    void commitTransaction(Transaction tx) {
+        transaction = null;
+    }
+
+    /**
+     * Возвращает в хранилища исходные объекты из журнала отмены и восстанавливает их поля,
+     * а задачи, созданные в транзакции, удаляет. Индексы пересобираются только для затронутых id.
+     * Восстановленное состояние публикуется одной версией до закрытия транзакции,
+     * поэтому другие потоки не видят ни изменений транзакции, ни половины отката.
+     */
+    void rollbackTransaction(Transaction tx) {
+        boolean outermost = beginChange();
+        try {
+            undo(tx);
+        } finally {
+            endChange(outermost);
+            transaction = null;
+        }
+    }
+
+    private void undo(Transaction tx) {
+        for (Transaction.UndoEntry entry : tx.getUndoLog()) {
+            unindexTask(entry.type, entry.id);
+            if (entry.original == null) {
+                storage(entry.type).remove(entry.id);
+                continue;
+            }
+            if (entry.original instanceof EpicTask epictask) {
+                epictask.restoreFrom((EpicTask) entry.before);
             } else {
-                for (Subtask subtask : subtasksOfEpic) {
-                    if (subtask.getStatus() == TaskStatus.NEW) {
-                        newSubtaskCounter++;
-                    } else if (subtask.getStatus() == TaskStatus.DONE) {
-                        doneSubtaskCounter++;
+                entry.original.setTitle(entry.before.getTitle());
+                entry.original.setDescription(entry.before.getDescription());
+                entry.original.setStatus(entry.before.getStatus());
+            }
+            switch (entry.type) {
+                case TASK -> allTasks.put(entry.id, entry.original);
+                case EPIC -> allEpicTasks.put(entry.id, (EpicTask) entry.original);
+                case SUBTASK -> allSubtasks.put(entry.id, (Subtask) entry.original);
+            }
+            indexTask(entry.original);
+        }
+    }
+
+    /**
+     * Перед первым изменением задачи в открытой транзакции запоминает ее в журнале отмены.
+     */
+    private void touch(TaskType type, int id) {
+        Transaction tx = transaction;
+        if (tx == null || !tx.isOwnedByCurrentThread() || tx.isRecorded(id)) {
+            return;
+        }
+        Task original = storage(type).get(id);
+        Task before = null;
+        if (original instanceof EpicTask epictask) {
+            before = epictask.copyWithLinks();
+        } else if (original != null) {
+            before = original.copy();
+        }
+        tx.record(type, id, original, before);
+    }
+
+    /**
+     * Перед удалением всех задач типа: без транзакции текущего потока задачи не обходятся.
+     */
+    private void touchAll(TaskType type) {
+        Transaction tx = transaction;
+        if (tx == null || !tx.isOwnedByCurrentThread()) {
+            return;
+        }
+        for (Task task : storage(type).values()) {
+            touch(type, task.getId());
+        }
+    }
+
+    private IntObjectMap<? extends Task> storage(TaskType type) {
+        return switch (type) {
+            case TASK -> allTasks;
+            case EPIC -> allEpicTasks;
+            case SUBTASK -> allSubtasks;
+        };
+    }
+
+    /**
+     * Без открытой транзакции пакет применяется под своим журналом отмены, минуя beginTransaction(),
+     * чтобы файловый менеджер не принял его за пользовательскую транзакцию. Внутри транзакции текущего потока
+     * отдельный журнал не нужен: сорвавшийся пакет откатит она.
+     */
+    @Override
+    public void applyBatch(List<Mutation> batch) {
+        validateBatch(batch);
+        boolean outermost = beginChange();
+        Transaction undo = null;
+        if (transaction == null) {
+            undo = new Transaction(this, snapshot.get());
+            transaction = undo;
+        }
+        boolean applied = false;
+        deferredEpicStatuses = new LinkedHashSet<>();
+        try {
+            for (Mutation mutation : batch) {
+                apply(mutation);
+            }
+            Set<Integer> epicIds = deferredEpicStatuses;
+            deferredEpicStatuses = null;
+            for (Integer epicId : epicIds) {
+                updateEpicTaskStatus(epicId);
+            }
+            batchApplied();
+            applied = true;
+        } finally {
+            deferredEpicStatuses = null;
+            try {
+                if (undo != null && !applied) {
+                    undo(undo);
+                }
+            } finally {
+                endChange(outermost);
+                if (undo != null) {
+                    transaction = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Вызывается, когда пакет применен в памяти, но еще не опубликован: исключение отсюда откатывает пакет.
+     */
+    void batchApplied() {
+    }
+
+    private void apply(Mutation mutation) {
+        switch (mutation.getKind()) {
+            case CREATE_TASK -> createTask(mutation.getTask());
+            case CREATE_EPIC -> createEpicTask((EpicTask) mutation.getTask());
+            case CREATE_SUBTASK -> {
+                Subtask subtask = (Subtask) mutation.getTask();
+                if (mutation.getEpic() != null) {
+                    subtask.setEpicId(mutation.getEpic().getId());
+                }
+                createSubtask(subtask);
+            }
+            case UPDATE_TASK -> updateTask(mutation.getTask());
+            case UPDATE_EPIC -> updateEpicTask((EpicTask) mutation.getTask());
+            case UPDATE_SUBTASK -> updateSubtask((Subtask) mutation.getTask());
+            case DELETE_TASK -> deleteTask(mutation.getId());
+            case DELETE_EPIC -> deleteEpicTask(mutation.getId());
+            case DELETE_SUBTASK -> deleteSubtask(mutation.getId());
+        }
+    }
+
+    /**
+     * Прогоняет пакет по текущему состоянию, не меняя его: помнит, какие id пакет уже удалил,
+     * какие эпики (по объекту, id у них еще нет) уже создал и в какие эпики перенес подзадачи.
+     */
+    private void validateBatch(List<Mutation> batch) {
+        Set<Integer> deleted = new HashSet<>();
+        Set<EpicTask> created = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Integer, Integer> epicOf = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Mutation mutation = batch.get(i);
+            String problem = switch (mutation.getKind()) {
+                case CREATE_TASK -> checkType(mutation.getTask(), TaskType.TASK);
+                case CREATE_EPIC -> checkType(mutation.getTask(), TaskType.EPIC);
+                case CREATE_SUBTASK -> {
+                    String typeProblem = checkType(mutation.getTask(), TaskType.SUBTASK);
+                    if (typeProblem != null) {
+                        yield typeProblem;
+                    }
+                    if (mutation.getEpic() != null) {
+                        yield created.contains(mutation.getEpic()) ? null : "эпик не создан раньше в этом пакете";
                     }
+                    Integer epicId = ((Subtask) mutation.getTask()).getEpicId();
+                    yield epicId != null && allEpicTasks.containsKey(epicId) && !deleted.contains(epicId)
+                            ? null
+                            : "эпик id: " + epicId + " не найден";
                 }
-                if (subtasksOfEpicSize == newSubtaskCounter) {
-                    epictask.setStatus(TaskStatus.NEW);
-                } else if (subtasksOfEpicSize == doneSubtaskCounter) {
-                    epictask.setStatus(TaskStatus.DONE);
-                } else {
-                    epictask.setStatus(TaskStatus.IN_PROGRESS);
+                case UPDATE_TASK -> checkExisting(mutation, TaskType.TASK, allTasks, deleted);
+                case UPDATE_EPIC -> checkExisting(mutation, TaskType.EPIC, allEpicTasks, deleted);
+                case UPDATE_SUBTASK -> {
+                    String problemWithId = checkExisting(mutation, TaskType.SUBTASK, allSubtasks, deleted);
+                    if (problemWithId != null) {
+                        yield problemWithId;
+                    }
+                    Integer epicId = ((Subtask) mutation.getTask()).getEpicId();
+                    yield epicId != null && allEpicTasks.containsKey(epicId) && !deleted.contains(epicId)
+                            ? null
+                            : "эпик id: " + epicId + " не найден";
+                }
+                case DELETE_TASK -> checkExisting(mutation, null, allTasks, deleted);
+                case DELETE_EPIC -> checkExisting(mutation, null, allEpicTasks, deleted);
+                case DELETE_SUBTASK -> checkExisting(mutation, null, allSubtasks, deleted);
+            };
+            if (problem != null) {
+                throw new InvalidBatchException("Пакет отклонен, операция " + i + " " + mutation.getKind()
+                        + ": " + problem + ".");
+            }
+            switch (mutation.getKind()) {
+                case CREATE_EPIC -> created.add((EpicTask) mutation.getTask());
+                case DELETE_TASK, DELETE_SUBTASK -> deleted.add(mutation.getId());
+                case UPDATE_SUBTASK -> epicOf.put(mutation.getId(), ((Subtask) mutation.getTask()).getEpicId());
+                case DELETE_EPIC -> {
+                    deleted.add(mutation.getId());
+                    for (Integer subtaskId : allEpicTasks.get(mutation.getId()).getSubtasks()) {
+                        if (epicOf.getOrDefault(subtaskId, mutation.getId()).equals(mutation.getId())) {
+                            deleted.add(subtaskId);
+                        }
+                    }
+                    epicOf.forEach((subtaskId, epicId) -> {
+                        if (epicId.equals(mutation.getId())) {
+                            deleted.add(subtaskId);
+                        }
+                    });
+                }
+                default -> {
                 }
             }
         }
     }
 
-}
\ No newline at end of file
+    private static String checkType(Task task, TaskType type) {
+        return task == null || task.getType() != type ? "ожидалась задача типа " + type : null;
+    }
+
+    private static String checkExisting(Mutation mutation, TaskType type, IntObjectMap<? extends Task> storage,
+                                        Set<Integer> deleted) {
+        if (type != null) {
+            String typeProblem = checkType(mutation.getTask(), type);
+            if (typeProblem != null) {
+                return typeProblem;
+            }
+        }
+        return storage.containsKey(mutation.getId()) && !deleted.contains(mutation.getId())
+                ? null
+                : "id: " + mutation.getId() + " не найден";
+    }
+
+    /**
+     * Заполняет индексы заново по текущему содержимому хранилищ, например после загрузки из файла.
+     */
+    void rebuildIndexes() {
+        for (TaskType type : TaskType.values()) {
+            statusIndex.clear(type);
+            searchIndex.clear(type);
+        }
+        for (Task task : allTasks.values()) {
+            statusIndex.add(task);
+            searchIndex.add(task);
+        }
+        for (EpicTask epictask : allEpicTasks.values()) {
+            statusIndex.add(epictask);
+            searchIndex.add(epictask);
+        }
+        for (Subtask subtask : allSubtasks.values()) {
+            statusIndex.add(subtask);
+            searchIndex.add(subtask);
+        }
+        taskOrder.rebuild(allTasks.values());
+        epicOrder.rebuild(allEpicTasks.values());
+        subtaskOrder.rebuild(allSubtasks.values());
+        TaskSnapshot rebuilt = TaskSnapshot.EMPTY;
+        for (Task task : allTasks.values()) {
+            rebuilt = rebuilt.with(task);
+        }
+        for (EpicTask epictask : allEpicTasks.values()) {
+            rebuilt = rebuilt.with(epictask);
+        }
+        for (Subtask subtask : allSubtasks.values()) {
+            rebuilt = rebuilt.with(subtask);
+        }
+        final TaskSnapshot loaded = rebuilt;
+        publish(snapshot -> loaded);
+    }
+
+    private void indexTask(Task task) {
+        statusIndex.add(task);
+        searchIndex.add(task);
+        idOrder(task.getType()).add(task.getId());
+        publish(snapshot -> snapshot.with(task));
+    }
+
+    private void reindexTask(Task task) {
+        statusIndex.reindex(task);
+        searchIndex.add(task);
+        publish(snapshot -> snapshot.with(task));
+    }
+
+    /**
+     * Вызывается после удаления задачи из хранилища: порядок id проверяет по нему, жив ли id.
+     */
+    private void unindexTask(TaskType type, int id) {
+        statusIndex.remove(type, id);
+        searchIndex.remove(type, id);
+        idOrder(type).remove(id);
+        publish(snapshot -> snapshot.without(type, id));
+    }
+
+    private void unindexAll(TaskType type) {
+        statusIndex.clear(type);
+        searchIndex.clear(type);
+        idOrder(type).clear();
+        publish(snapshot -> snapshot.cleared(type));
+    }
+
+    /**
+     * Писатель строит новую версию из опубликованной и ставит ее сравнением с обменом; если его опередили,
+     * шаги применяются заново к новой версии. Шаги — чистые функции, а шаги с одним id не пересекаются
+     * между потоками, потому что их уже упорядочили блокировки менеджера, так что повтор безопасен.
+     * Читатели берут опубликованную версию без блокировки.
+     * Внутри изменения, начатого {@link #beginChange()}, шаги копятся и публикуются вместе.
+     */
+    private void publish(UnaryOperator<TaskSnapshot> change) {
+        List<UnaryOperator<TaskSnapshot>> pending = pendingChanges.get();
+        if (pending != null) {
+            pending.add(change);
+            return;
+        }
+        snapshot.updateAndGet(change);
+    }
+
+    /**
+     * Начинает публичное изменение из нескольких шагов, чтобы читатели увидели его одной версией.
+     * Возвращает false, если поток уже внутри изменения: тогда шаги войдут во внешнее.
+     */
+    private boolean beginChange() {
+        if (pendingChanges.get() != null) {
+            return false;
+        }
+        pendingChanges.set(new ArrayList<>());
+        return true;
+    }
+
+    private void endChange(boolean outermost) {
+        if (!outermost) {
+            return;
+        }
+        List<UnaryOperator<TaskSnapshot>> pending = pendingChanges.get();
+        pendingChanges.remove();
+        if (pending.isEmpty()) {
+            return;
+        }
+        snapshot.updateAndGet(published -> {
+            TaskSnapshot next = published;
+            for (UnaryOperator<TaskSnapshot> change : pending) {
+                next = change.apply(next);
+            }
+            return next;
+        });
+    }
+
+    private IdOrder idOrder(TaskType type) {
+        return switch (type) {
+            case TASK -> taskOrder;
+            case EPIC -> epicOrder;
+            case SUBTASK -> subtaskOrder;
+        };
+    }
+
+    private <T extends Task> Page<T> page(IdOrder order, IntObjectMap<T> storage, int afterId, int limit) {
+        checkPageLimit(limit);
+        int[] ids = order.after(afterId, (int) Math.min((long) limit + 1, Integer.MAX_VALUE));
+        int scanned = Math.min(ids.length, limit);
+        List<T> items = new ArrayList<>(scanned);
+        for (int i = 0; i < scanned; i++) {
+            T task = storage.get(ids[i]);
+            if (task != null) {
+                items.add(task);
+            }
+        }
+        return new Page<>(items, scanned == 0 ? afterId : ids[scanned - 1], ids.length > limit);
+    }
+
+    private static void checkPageLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным.");
+        }
+    }
+
+    private TaskStatus recalculateEpicTaskStatus(Integer id) {
+        ArrayList<Subtask> subtasksOfEpic = getSubtasksOfEpic(id);
+        int subtasksOfEpicSize = subtasksOfEpic.size();
+        int newSubtaskCounter = 0;
+        int doneSubtaskCounter = 0;
+        for (Subtask subtask : subtasksOfEpic) {
+            if (subtask.getStatus() == TaskStatus.NEW) {
+                newSubtaskCounter++;
+            } else if (subtask.getStatus() == TaskStatus.DONE) {
+                doneSubtaskCounter++;
+            }
+        }
+        if (subtasksOfEpicSize == newSubtaskCounter) {
+            return TaskStatus.NEW;
+        } else if (subtasksOfEpicSize == doneSubtaskCounter) {
+            return TaskStatus.DONE;
+        }
+        return TaskStatus.IN_PROGRESS;
+    }
+
+    /**
+     * Фабрика пустых карт int -> объект любого типа значений; задается ссылкой на конструктор карты.
+     */
+    @FunctionalInterface
+    protected interface IntMapFactory {
+        <V> IntObjectMap<V> create();
+    }
+}
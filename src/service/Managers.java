@@ -3,11 +3,36 @@ package service;
 import java.io.File;
 
 public class Managers {
+    public static final String HISTORY_CAPACITY_PROPERTY = "kanban.history.capacity";
+    public static final String METRICS_PROPERTY = "kanban.metrics";
+
+    /**
+     * При -Dkanban.metrics=true менеджер обернут в {@link MetricsTaskManager}.
+     */
     public static TaskManager getDefault() {
-        return new FileBackedTaskManager(new File("resources/backupFile.csv"));
+        return withMetricsIfEnabled(FileBackedTaskManager.loadFromFile(new File("resources/backupFile.csv")));
+    }
+
+    public static TaskManager getConcurrent() {
+        return withMetricsIfEnabled(new ConcurrentTaskManager());
+    }
+
+    public static MetricsTaskManager withMetrics(TaskManager manager) {
+        return new MetricsTaskManager(manager);
+    }
+
+    private static TaskManager withMetricsIfEnabled(TaskManager manager) {
+        return Boolean.getBoolean(METRICS_PROPERTY) ? withMetrics(manager) : manager;
     }
 
     public static HistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+        return getDefaultHistory(Integer.getInteger(HISTORY_CAPACITY_PROPERTY, InMemoryHistoryManager.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * История, которая хранит не больше capacity последних просмотренных задач.
+     */
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
     }
 }
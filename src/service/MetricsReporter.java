@@ -0,0 +1,9 @@
+package service;
+
+/**
+ * Куда выгружаются метрики менеджера: лог, файл, система мониторинга.
+ */
+@FunctionalInterface
+public interface MetricsReporter {
+    void report(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,113 @@
+package service;
+
+import util.LatencyHistogram;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Метрики менеджера на момент времени. Задержки вызовов — по именам методов {@link TaskManager},
+ * перегрузки отличаются суффиксом, например "getHistory(limit)". Значения, которые менеджер под декоратором
+ * не ведет, равны -1, а гистограммы журнала и save() для менеджера без файла — null.
+ */
+public final class MetricsSnapshot {
+    private final Instant timestamp;
+    private final Map<String, LatencyHistogram.Snapshot> latencies;
+    private final long epicStatusRecomputations;
+    private final long bytesWritten;
+    private final int historySize;
+    private final LatencyHistogram.Snapshot journalAppendTimes;
+    private final LatencyHistogram.Snapshot journalForceTimes;
+    private final LatencyHistogram.Snapshot saveStateTimes;
+    private final LatencyHistogram.Snapshot saveWriteTimes;
+
+    MetricsSnapshot(Instant timestamp, Map<String, LatencyHistogram.Snapshot> latencies,
+                    long epicStatusRecomputations, long bytesWritten, int historySize,
+                    LatencyHistogram.Snapshot journalAppendTimes, LatencyHistogram.Snapshot journalForceTimes,
+                    LatencyHistogram.Snapshot saveStateTimes, LatencyHistogram.Snapshot saveWriteTimes) {
+        this.timestamp = timestamp;
+        this.latencies = Collections.unmodifiableMap(latencies);
+        this.epicStatusRecomputations = epicStatusRecomputations;
+        this.bytesWritten = bytesWritten;
+        this.historySize = historySize;
+        this.journalAppendTimes = journalAppendTimes;
+        this.journalForceTimes = journalForceTimes;
+        this.saveStateTimes = saveStateTimes;
+        this.saveWriteTimes = saveWriteTimes;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Гистограммы задержек в наносекундах; число вызовов метода — getCount() его гистограммы.
+     */
+    public Map<String, LatencyHistogram.Snapshot> getLatencies() {
+        return latencies;
+    }
+
+    public long getCallCount(String method) {
+        final LatencyHistogram.Snapshot latency = latencies.get(method);
+        return latency == null ? 0 : latency.getCount();
+    }
+
+    public long getEpicStatusRecomputations() {
+        return epicStatusRecomputations;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Дописывание каждой мутации в журнал, включая fsync в режиме sync.
+     */
+    public LatencyHistogram.Snapshot getJournalAppendTimes() {
+        return journalAppendTimes;
+    }
+
+    /**
+     * Каждый fsync журнала, в том числе фоновый.
+     */
+    public LatencyHistogram.Snapshot getJournalForceTimes() {
+        return journalForceTimes;
+    }
+
+    /**
+     * Часть save(), занятая копированием задач в памяти.
+     */
+    public LatencyHistogram.Snapshot getSaveStateTimes() {
+        return saveStateTimes;
+    }
+
+    /**
+     * Часть save(), занятая работой с файлами.
+     */
+    public LatencyHistogram.Snapshot getSaveWriteTimes() {
+        return saveWriteTimes;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder("MetricsSnapshot{timestamp=").append(timestamp)
+                .append(", epicStatusRecomputations=").append(epicStatusRecomputations)
+                .append(", bytesWritten=").append(bytesWritten)
+                .append(", historySize=").append(historySize);
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : latencies.entrySet()) {
+            final LatencyHistogram.Snapshot latency = entry.getValue();
+            if (latency.getCount() > 0) {
+                result.append(", ").append(entry.getKey()).append("={count=").append(latency.getCount())
+                        .append(", p50=").append(latency.getValueAtPercentile(50))
+                        .append(", p99=").append(latency.getValueAtPercentile(99))
+                        .append(", max=").append(latency.getMax()).append('}');
+            }
+        }
+        return result.append('}').toString();
+    }
+}
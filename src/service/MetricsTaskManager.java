@@ -0,0 +1,559 @@
+package service;
+
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+import util.LatencyHistogram;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Декоратор, который считает вызовы и задержки каждого метода менеджера. Запись в гистограмму
+ * ничего не выделяет, поэтому декоратор можно держать включенным постоянно. Для методов stream*
+ * замеряется только создание ленивого потока, а не его чтение.
+ * Пересчеты статусов эпиков, записанные байты, время записи в журнал и save() декоратор берет у менеджера под ним,
+ * если это {@link InMemoryTaskManager} или {@link FileBackedTaskManager}.
+ */
+public class MetricsTaskManager implements TaskManager {
+    private final TaskManager delegate;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+
+    public MetricsTaskManager(TaskManager delegate) {
+        this.delegate = delegate;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public TaskManager getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Текущие значения метрик.
+     */
+    public MetricsSnapshot getMetrics() {
+        final Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            snapshots.put(operation.method, latencies[operation.ordinal()].snapshot());
+        }
+        long epicStatusRecomputations = -1;
+        int historySize = -1;
+        if (delegate instanceof InMemoryTaskManager inMemory) {
+            epicStatusRecomputations = inMemory.getEpicStatusRecomputations();
+            historySize = inMemory.getHistorySize();
+        }
+        long bytesWritten = -1;
+        LatencyHistogram.Snapshot journalAppendTimes = null;
+        LatencyHistogram.Snapshot journalForceTimes = null;
+        LatencyHistogram.Snapshot saveStateTimes = null;
+        LatencyHistogram.Snapshot saveWriteTimes = null;
+        if (delegate instanceof FileBackedTaskManager fileBacked) {
+            bytesWritten = fileBacked.getBytesWritten();
+            journalAppendTimes = fileBacked.getJournalAppendTimes();
+            journalForceTimes = fileBacked.getJournalForceTimes();
+            saveStateTimes = fileBacked.getSaveStateTimes();
+            saveWriteTimes = fileBacked.getSaveWriteTimes();
+        }
+        return new MetricsSnapshot(Instant.now(), snapshots, epicStatusRecomputations, bytesWritten,
+                historySize, journalAppendTimes, journalForceTimes, saveStateTimes, saveWriteTimes);
+    }
+
+    public void report(MetricsReporter reporter) {
+        reporter.report(getMetrics());
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getHistory();
+        } finally {
+            record(Operation.GET_HISTORY, start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int limit) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getHistory(limit);
+        } finally {
+            record(Operation.GET_HISTORY_LIMIT, start);
+        }
+    }
+
+    @Override
+    public Integer getId() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getId();
+        } finally {
+            record(Operation.GET_ID, start);
+        }
+    }
+
+    @Override
+    public Integer generateId() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.generateId();
+        } finally {
+            record(Operation.GENERATE_ID, start);
+        }
+    }
+
+    @Override
+    public void createTask(Task task) {
+        final long start = System.nanoTime();
+        try {
+            delegate.createTask(task);
+        } finally {
+            record(Operation.CREATE_TASK, start);
+        }
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        final long start = System.nanoTime();
+        try {
+            delegate.createSubtask(subtask);
+        } finally {
+            record(Operation.CREATE_SUBTASK, start);
+        }
+    }
+
+    @Override
+    public void createEpicTask(EpicTask epictask) {
+        final long start = System.nanoTime();
+        try {
+            delegate.createEpicTask(epictask);
+        } finally {
+            record(Operation.CREATE_EPIC_TASK, start);
+        }
+    }
+
+    @Override
+    public ArrayList<Task> getAllTasks() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getAllTasks();
+        } finally {
+            record(Operation.GET_ALL_TASKS, start);
+        }
+    }
+
+    @Override
+    public ArrayList<EpicTask> getAllEpicTasks() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getAllEpicTasks();
+        } finally {
+            record(Operation.GET_ALL_EPIC_TASKS, start);
+        }
+    }
+
+    @Override
+    public ArrayList<Subtask> getAllSubtasks() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getAllSubtasks();
+        } finally {
+            record(Operation.GET_ALL_SUBTASKS, start);
+        }
+    }
+
+    @Override
+    public ArrayList<Task> getByType(TaskType type) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getByType(type);
+        } finally {
+            record(Operation.GET_BY_TYPE, start);
+        }
+    }
+
+    @Override
+    public ArrayList<Task> getByStatus(TaskType type, TaskStatus status) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getByStatus(type, status);
+        } finally {
+            record(Operation.GET_BY_STATUS, start);
+        }
+    }
+
+    @Override
+    public int countByStatus(TaskType type, TaskStatus status) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.countByStatus(type, status);
+        } finally {
+            record(Operation.COUNT_BY_STATUS, start);
+        }
+    }
+
+    @Override
+    public ArrayList<Task> search(String query, int limit) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.search(query, limit);
+        } finally {
+            record(Operation.SEARCH, start);
+        }
+    }
+
+    @Override
+    public Page<Task> getTasks(int afterId, int limit) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getTasks(afterId, limit);
+        } finally {
+            record(Operation.GET_TASKS, start);
+        }
+    }
+
+    @Override
+    public Page<EpicTask> getEpicTasks(int afterId, int limit) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getEpicTasks(afterId, limit);
+        } finally {
+            record(Operation.GET_EPIC_TASKS, start);
+        }
+    }
+
+    @Override
+    public Page<Subtask> getSubtasks(int afterId, int limit) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getSubtasks(afterId, limit);
+        } finally {
+            record(Operation.GET_SUBTASKS, start);
+        }
+    }
+
+    @Override
+    public Page<Subtask> getSubtasksOfEpic(Integer id, int afterId, int limit) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getSubtasksOfEpic(id, afterId, limit);
+        } finally {
+            record(Operation.GET_SUBTASKS_OF_EPIC_PAGE, start);
+        }
+    }
+
+    @Override
+    public Stream<Task> streamTasks() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.streamTasks();
+        } finally {
+            record(Operation.STREAM_TASKS, start);
+        }
+    }
+
+    @Override
+    public Stream<EpicTask> streamEpicTasks() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.streamEpicTasks();
+        } finally {
+            record(Operation.STREAM_EPIC_TASKS, start);
+        }
+    }
+
+    @Override
+    public Stream<Subtask> streamSubtasks() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.streamSubtasks();
+        } finally {
+            record(Operation.STREAM_SUBTASKS, start);
+        }
+    }
+
+    @Override
+    public Stream<Subtask> streamSubtasksOfEpic(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.streamSubtasksOfEpic(id);
+        } finally {
+            record(Operation.STREAM_SUBTASKS_OF_EPIC, start);
+        }
+    }
+
+    @Override
+    public Task getTask(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getTask(id);
+        } finally {
+            record(Operation.GET_TASK, start);
+        }
+    }
+
+    @Override
+    public EpicTask getEpicTask(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getEpicTask(id);
+        } finally {
+            record(Operation.GET_EPIC_TASK, start);
+        }
+    }
+
+    @Override
+    public Subtask getSubtask(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getSubtask(id);
+        } finally {
+            record(Operation.GET_SUBTASK, start);
+        }
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteAllTasks();
+        } finally {
+            record(Operation.DELETE_ALL_TASKS, start);
+        }
+    }
+
+    @Override
+    public void deleteAllEpicTasks() {
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteAllEpicTasks();
+        } finally {
+            record(Operation.DELETE_ALL_EPIC_TASKS, start);
+        }
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteAllSubtasks();
+        } finally {
+            record(Operation.DELETE_ALL_SUBTASKS, start);
+        }
+    }
+
+    @Override
+    public void deleteTask(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteTask(id);
+        } finally {
+            record(Operation.DELETE_TASK, start);
+        }
+    }
+
+    @Override
+    public void deleteEpicTask(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteEpicTask(id);
+        } finally {
+            record(Operation.DELETE_EPIC_TASK, start);
+        }
+    }
+
+    @Override
+    public void deleteSubtask(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteSubtask(id);
+        } finally {
+            record(Operation.DELETE_SUBTASK, start);
+        }
+    }
+
+    @Override
+    public ArrayList<Subtask> getSubtasksOfEpic(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getSubtasksOfEpic(id);
+        } finally {
+            record(Operation.GET_SUBTASKS_OF_EPIC, start);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        final long start = System.nanoTime();
+        try {
+            delegate.updateTask(task);
+        } finally {
+            record(Operation.UPDATE_TASK, start);
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        final long start = System.nanoTime();
+        try {
+            delegate.updateSubtask(subtask);
+        } finally {
+            record(Operation.UPDATE_SUBTASK, start);
+        }
+    }
+
+    @Override
+    public void updateEpicTask(EpicTask newEpictask) {
+        final long start = System.nanoTime();
+        try {
+            delegate.updateEpicTask(newEpictask);
+        } finally {
+            record(Operation.UPDATE_EPIC_TASK, start);
+        }
+    }
+
+    @Override
+    public void updateEpicTaskStatus(Integer id) {
+        final long start = System.nanoTime();
+        try {
+            delegate.updateEpicTaskStatus(id);
+        } finally {
+            record(Operation.UPDATE_EPIC_TASK_STATUS, start);
+        }
+    }
+
+    @Override
+    public void applyBatch(List<Mutation> batch) {
+        final long start = System.nanoTime();
+        try {
+            delegate.applyBatch(batch);
+        } finally {
+            record(Operation.APPLY_BATCH, start);
+        }
+    }
+
+    /**
+     * Транзакция оборачивается, чтобы замерять и ее commit() с rollback(), в том числе откат из close().
+     */
+    @Override
+    public Transaction beginTransaction() {
+        final long start = System.nanoTime();
+        try {
+            return new MeasuredTransaction(delegate.beginTransaction());
+        } finally {
+            record(Operation.BEGIN_TRANSACTION, start);
+        }
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.snapshot();
+        } finally {
+            record(Operation.SNAPSHOT, start);
+        }
+    }
+
+    private void record(Operation operation, long start) {
+        latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    private final class MeasuredTransaction extends Transaction {
+        private final Transaction transaction;
+
+        MeasuredTransaction(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void commit() {
+            final long start = System.nanoTime();
+            try {
+                transaction.commit();
+            } finally {
+                MetricsTaskManager.this.record(Operation.COMMIT_TRANSACTION, start);
+            }
+        }
+
+        @Override
+        public void rollback() {
+            final long start = System.nanoTime();
+            try {
+                transaction.rollback();
+            } finally {
+                MetricsTaskManager.this.record(Operation.ROLLBACK_TRANSACTION, start);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (transaction.isActive()) {
+                rollback();
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            return transaction.isActive();
+        }
+    }
+
+    private enum Operation {
+        GET_HISTORY("getHistory"),
+        GET_HISTORY_LIMIT("getHistory(limit)"),
+        GET_ID("getId"),
+        GENERATE_ID("generateId"),
+        CREATE_TASK("createTask"),
+        CREATE_SUBTASK("createSubtask"),
+        CREATE_EPIC_TASK("createEpicTask"),
+        GET_ALL_TASKS("getAllTasks"),
+        GET_ALL_EPIC_TASKS("getAllEpicTasks"),
+        GET_ALL_SUBTASKS("getAllSubtasks"),
+        GET_BY_TYPE("getByType"),
+        GET_BY_STATUS("getByStatus"),
+        COUNT_BY_STATUS("countByStatus"),
+        SEARCH("search"),
+        GET_TASKS("getTasks"),
+        GET_EPIC_TASKS("getEpicTasks"),
+        GET_SUBTASKS("getSubtasks"),
+        GET_SUBTASKS_OF_EPIC_PAGE("getSubtasksOfEpic(page)"),
+        STREAM_TASKS("streamTasks"),
+        STREAM_EPIC_TASKS("streamEpicTasks"),
+        STREAM_SUBTASKS("streamSubtasks"),
+        STREAM_SUBTASKS_OF_EPIC("streamSubtasksOfEpic"),
+        GET_TASK("getTask"),
+        GET_EPIC_TASK("getEpicTask"),
+        GET_SUBTASK("getSubtask"),
+        DELETE_ALL_TASKS("deleteAllTasks"),
+        DELETE_ALL_EPIC_TASKS("deleteAllEpicTasks"),
+        DELETE_ALL_SUBTASKS("deleteAllSubtasks"),
+        DELETE_TASK("deleteTask"),
+        DELETE_EPIC_TASK("deleteEpicTask"),
+        DELETE_SUBTASK("deleteSubtask"),
+        GET_SUBTASKS_OF_EPIC("getSubtasksOfEpic"),
+        UPDATE_TASK("updateTask"),
+        UPDATE_SUBTASK("updateSubtask"),
+        UPDATE_EPIC_TASK("updateEpicTask"),
+        UPDATE_EPIC_TASK_STATUS("updateEpicTaskStatus"),
+        APPLY_BATCH("applyBatch"),
+        BEGIN_TRANSACTION("beginTransaction"),
+        COMMIT_TRANSACTION("Transaction.commit"),
+        ROLLBACK_TRANSACTION("Transaction.rollback"),
+        SNAPSHOT("snapshot");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package service;
+
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+
+/**
+ * Одна операция пакета для {@link TaskManager#applyBatch(java.util.List)}.
+ */
+public class Mutation {
+    public enum Kind {
+        CREATE_TASK,
+        CREATE_EPIC,
+        CREATE_SUBTASK,
+        UPDATE_TASK,
+        UPDATE_EPIC,
+        UPDATE_SUBTASK,
+        DELETE_TASK,
+        DELETE_EPIC,
+        DELETE_SUBTASK
+    }
+
+    private final Kind kind;
+    private final Task task;
+    private final int id;
+    private final EpicTask epic;
+
+    private Mutation(Kind kind, Task task, int id) {
+        this(kind, task, id, null);
+    }
+
+    private Mutation(Kind kind, Task task, int id, EpicTask epic) {
+        this.kind = kind;
+        this.task = task;
+        this.id = id;
+        this.epic = epic;
+    }
+
+    public static Mutation createTask(Task task) {
+        return new Mutation(Kind.CREATE_TASK, task, 0);
+    }
+
+    public static Mutation createEpicTask(EpicTask epictask) {
+        return new Mutation(Kind.CREATE_EPIC, epictask, 0);
+    }
+
+    public static Mutation createSubtask(Subtask subtask) {
+        return new Mutation(Kind.CREATE_SUBTASK, subtask, 0);
+    }
+
+    /**
+     * Подзадача эпика, который создается раньше в том же пакете: его id еще не выдан, поэтому эпик
+     * указывается тем же объектом, что передан в {@link #createEpicTask(EpicTask)}, а id эпика
+     * подставляется в подзадачу при применении.
+     */
+    public static Mutation createSubtask(Subtask subtask, EpicTask epic) {
+        return new Mutation(Kind.CREATE_SUBTASK, subtask, 0, epic);
+    }
+
+    public static Mutation updateTask(Task task) {
+        return new Mutation(Kind.UPDATE_TASK, task, task.getId());
+    }
+
+    public static Mutation updateEpicTask(EpicTask epictask) {
+        return new Mutation(Kind.UPDATE_EPIC, epictask, epictask.getId());
+    }
+
+    public static Mutation updateSubtask(Subtask subtask) {
+        return new Mutation(Kind.UPDATE_SUBTASK, subtask, subtask.getId());
+    }
+
+    public static Mutation deleteTask(int id) {
+        return new Mutation(Kind.DELETE_TASK, null, id);
+    }
+
+    public static Mutation deleteEpicTask(int id) {
+        return new Mutation(Kind.DELETE_EPIC, null, id);
+    }
+
+    public static Mutation deleteSubtask(int id) {
+        return new Mutation(Kind.DELETE_SUBTASK, null, id);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Эпик, созданный в пакете, для {@link #createSubtask(Subtask, EpicTask)}; null у остальных операций.
+     */
+    public EpicTask getEpic() {
+        return epic;
+    }
+
+    @Override
+    public String toString() {
+        return "Mutation{" +
+                "kind=" + kind +
+                ", id=" + id +
+                ", task=" + task +
+                '}';
+    }
+}
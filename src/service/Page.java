@@ -0,0 +1,74 @@
+package service;
+
+import model.Task;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Страница задач, упорядоченных по id. Курсор следующей страницы — последний просмотренный id,
+ * следующая страница начнется с id строго больше него.
+ */
+public class Page<T extends Task> {
+    public static final int FIRST_CURSOR = 0;
+
+    private final List<T> items;
+    private final int nextCursor;
+    private final boolean hasNext;
+
+    public Page(List<T> items, int nextCursor, boolean hasNext) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * Ленивый поток по страницам: следующая страница запрашивается, только когда текущая прочитана.
+     */
+    static <T extends Task> Stream<T> stream(IntFunction<Page<T>> nextPage) {
+        final Iterator<T> iterator = new Iterator<>() {
+            private Page<T> page;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (page == null) {
+                    page = nextPage.apply(FIRST_CURSOR);
+                }
+                while (index == page.items.size() && page.hasNext) {
+                    page = nextPage.apply(page.nextCursor);
+                    index = 0;
+                }
+                return index < page.items.size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.items.get(index++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,481 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+import util.IntObjectHashMap;
+import util.IntObjectMap;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс по названиям и описаниям задач: терм -> хеш-таблица id -> вес терма.
+ * Добавление и удаление id в таблице терма стоят O(1) независимо от порядка id, а пересечение
+ * идет обходом таблицы самого редкого терма запроса с поиском каждого id в таблицах остальных.
+ * Слово из названия весит больше, чем слово из описания. Индекс разбит по типам задач, чтобы
+ * удаление всех задач одного типа не трогало остальные. Для каждой задачи хранится список ее термов,
+ * поэтому переиндексация не зависит от того, что сейчас лежит в объекте задачи.
+ * Запрос находит задачи, содержащие все его слова, и ранжирует их по сумме вес * idf.
+ * Индекс общий для потоков записи, поэтому термы по хешу разложены по полосам блокировок чтения-записи:
+ * переиндексация задачи берет по возрастанию номера только полосы своих старых и новых термов,
+ * а запрос — полосы своих слов, так что писатели с разными словами не мешают друг другу.
+ */
+class SearchIndex {
+    static final int TITLE_WEIGHT = 3;
+    static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final String[] NO_TERMS = new String[0];
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final TypeIndex[] types = new TypeIndex[TaskType.values().length];
+    private final ReentrantReadWriteLock[] stripes;
+
+    SearchIndex() {
+        this(IntObjectHashMap::new, 1);
+    }
+
+    /**
+     * Карты термов задач берутся из documentsFactory: при параллельной записи они должны быть потокобезопасными.
+     */
+    SearchIndex(Supplier<IntObjectMap<String[]>> documentsFactory, int stripeCount) {
+        for (int i = 0; i < types.length; i++) {
+            types[i] = new TypeIndex(documentsFactory.get());
+        }
+        stripes = new ReentrantReadWriteLock[stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Разбивает текст на слова: буквы и цифры подряд, в нижнем регистре, ё сведена к е,
+     * у латиницы сняты диакритические знаки.
+     */
+    static List<String> tokenize(String text) {
+        final List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        final StringBuilder token = new StringBuilder();
+        boolean hasLatinMarks = false;
+        for (int i = 0; i <= text.length(); i++) {
+            final char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                if (lower == 'ё') {
+                    lower = 'е';
+                } else if (lower >= '\u00C0' && lower < '\u0250') {
+                    hasLatinMarks = true;
+                }
+                token.append(lower);
+            } else if (!token.isEmpty()) {
+                String word = token.toString();
+                if (hasLatinMarks) {
+                    word = COMBINING_MARKS.matcher(Normalizer.normalize(word, Normalizer.Form.NFD)).replaceAll("");
+                }
+                tokens.add(word);
+                token.setLength(0);
+                hasLatinMarks = false;
+            }
+        }
+        return tokens;
+    }
+
+    void add(Task task) {
+        final Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String term : tokenize(task.getTitle())) {
+            weights.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(task.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        final TypeIndex type = types[task.getType().ordinal()];
+        final int id = task.getId();
+        final String[] terms = weights.isEmpty() ? NO_TERMS : weights.keySet().toArray(NO_TERMS);
+        // Термы задачи меняет только писатель, владеющий ее id, поэтому старые термы читаются до блокировок.
+        final String[] previous = type.documents.get(id);
+        final int[] locked = stripesOf(previous == null ? NO_TERMS : previous, terms);
+        lockAll(locked, true);
+        try {
+            removeLocked(type, id);
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                type.postings.computeIfAbsent(entry.getKey(), term -> new Postings()).put(id, entry.getValue());
+            }
+            type.documents.put(id, terms);
+        } finally {
+            unlockAll(locked, true);
+        }
+    }
+
+    void remove(TaskType type, int id) {
+        final String[] previous = types[type.ordinal()].documents.get(id);
+        if (previous == null) {
+            return;
+        }
+        final int[] locked = stripesOf(previous, NO_TERMS);
+        lockAll(locked, true);
+        try {
+            removeLocked(types[type.ordinal()], id);
+        } finally {
+            unlockAll(locked, true);
+        }
+    }
+
+    void clear(TaskType type) {
+        final int[] locked = new int[stripes.length];
+        Arrays.setAll(locked, i -> i);
+        lockAll(locked, true);
+        try {
+            types[type.ordinal()].postings.clear();
+            types[type.ordinal()].documents.clear();
+        } finally {
+            unlockAll(locked, true);
+        }
+    }
+
+    /**
+     * Возвращает id не более чем limit задач, содержащих все слова запроса, от более релевантных к менее.
+     */
+    int[] search(String query, int limit) {
+        final List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        final int[] locked = stripesOf(terms.toArray(NO_TERMS), NO_TERMS);
+        lockAll(locked, false);
+        try {
+            int documentCount = 0;
+            for (TypeIndex type : types) {
+                documentCount += type.documents.size();
+            }
+            final double[] idf = new double[terms.size()];
+            for (int i = 0; i < terms.size(); i++) {
+                int frequency = 0;
+                for (TypeIndex type : types) {
+                    final Postings termPostings = type.postings.get(terms.get(i));
+                    frequency += termPostings == null ? 0 : termPostings.size();
+                }
+                if (frequency == 0) {
+                    return new int[0];
+                }
+                idf[i] = Math.log(1 + (double) documentCount / frequency);
+            }
+
+            final TopHits top = new TopHits(Math.min(limit, documentCount));
+            final Postings[] termPostings = new Postings[terms.size()];
+            for (TypeIndex type : types) {
+                final int rarest = collectPostings(type.postings, terms, termPostings);
+                if (rarest >= 0) {
+                    scoreCandidates(termPostings, rarest, idf, top);
+                }
+            }
+            return top.toSortedIds();
+        } finally {
+            unlockAll(locked, false);
+        }
+    }
+
+    /**
+     * Номера полос для термов обоих массивов, без повторов и по возрастанию — в порядке захвата.
+     */
+    private int[] stripesOf(String[] first, String[] second) {
+        if (stripes.length == 1) {
+            return first.length + second.length == 0 ? new int[0] : new int[1];
+        }
+        final int[] indexes = new int[first.length + second.length];
+        for (int i = 0; i < first.length; i++) {
+            indexes[i] = stripeIndex(first[i]);
+        }
+        for (int i = 0; i < second.length; i++) {
+            indexes[first.length + i] = stripeIndex(second[i]);
+        }
+        return Arrays.stream(indexes).sorted().distinct().toArray();
+    }
+
+    private int stripeIndex(String term) {
+        final int hash = term.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    private void lockAll(int[] indexes, boolean write) {
+        for (int index : indexes) {
+            (write ? stripes[index].writeLock() : stripes[index].readLock()).lock();
+        }
+    }
+
+    private void unlockAll(int[] indexes, boolean write) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            (write ? stripes[indexes[i]].writeLock() : stripes[indexes[i]].readLock()).unlock();
+        }
+    }
+
+    /**
+     * Заполняет termPostings списками термов запроса и возвращает номер самого короткого из них
+     * или -1, если какого-то терма в этом типе нет.
+     */
+    private static int collectPostings(Map<String, Postings> typePostings, List<String> terms,
+                                       Postings[] termPostings) {
+        int rarest = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            termPostings[i] = typePostings.get(terms.get(i));
+            if (termPostings[i] == null) {
+                return -1;
+            }
+            if (termPostings[i].size() < termPostings[rarest].size()) {
+                rarest = i;
+            }
+        }
+        return rarest;
+    }
+
+    private static void scoreCandidates(Postings[] termPostings, int rarest, double[] idf, TopHits top) {
+        final Postings candidates = termPostings[rarest];
+        candidates:
+        for (int slot = 0; slot < candidates.ids.length; slot++) {
+            if (candidates.weights[slot] == 0) {
+                continue;
+            }
+            final int id = candidates.ids[slot];
+            double score = 0;
+            for (int i = 0; i < termPostings.length; i++) {
+                final int weight = i == rarest ? candidates.weights[slot] : termPostings[i].weightOf(id);
+                if (weight == 0) {
+                    continue candidates;
+                }
+                score += weight * idf[i];
+            }
+            top.offer(id, score);
+        }
+    }
+
+    private void removeLocked(TypeIndex type, int id) {
+        final String[] terms = type.documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            final Postings termPostings = type.postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    type.postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Индекс задач одного типа: списки вхождений термов и термы каждой задачи.
+     */
+    private static class TypeIndex {
+        final Map<String, Postings> postings = new ConcurrentHashMap<>();
+        final IntObjectMap<String[]> documents;
+
+        TypeIndex(IntObjectMap<String[]> documents) {
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Вхождения терма: открытая адресация id -> вес на параллельных массивах со вставкой и удалением
+     * по схеме Robin Hood, как в {@link IntObjectHashMap}. Вес всегда положителен, поэтому 0 отмечает пустую ячейку.
+     */
+    private static class Postings {
+        private static final int DEFAULT_CAPACITY = 4;
+
+        private int[] ids = new int[DEFAULT_CAPACITY];
+        private int[] weights = new int[DEFAULT_CAPACITY];
+        private int mask = DEFAULT_CAPACITY - 1;
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Вес терма в задаче id или 0, если терма в ней нет.
+         */
+        int weightOf(int id) {
+            final int slot = slotOf(id);
+            return slot < 0 ? 0 : weights[slot];
+        }
+
+        void put(int id, int weight) {
+            final int existing = slotOf(id);
+            if (existing >= 0) {
+                weights[existing] = weight;
+                return;
+            }
+            if ((size + 1) * 4 > ids.length * 3) {
+                resize(ids.length * 2);
+            }
+            insert(id, weight);
+            size++;
+        }
+
+        void remove(int id) {
+            int gap = slotOf(id);
+            if (gap < 0) {
+                return;
+            }
+            int slot = (gap + 1) & mask;
+            while (weights[slot] != 0 && distance(slot) != 0) {
+                ids[gap] = ids[slot];
+                weights[gap] = weights[slot];
+                gap = slot;
+                slot = (slot + 1) & mask;
+            }
+            weights[gap] = 0;
+            size--;
+        }
+
+        private int slotOf(int id) {
+            int slot = hash(id) & mask;
+            for (int distance = 0; weights[slot] != 0 && distance <= distance(slot); distance++) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(int id, int weight) {
+            int slot = hash(id) & mask;
+            int distance = 0;
+            while (weights[slot] != 0) {
+                final int existingDistance = distance(slot);
+                if (existingDistance < distance) {
+                    final int displacedId = ids[slot];
+                    final int displacedWeight = weights[slot];
+                    ids[slot] = id;
+                    weights[slot] = weight;
+                    id = displacedId;
+                    weight = displacedWeight;
+                    distance = existingDistance;
+                }
+                slot = (slot + 1) & mask;
+                distance++;
+            }
+            ids[slot] = id;
+            weights[slot] = weight;
+        }
+
+        private void resize(int capacity) {
+            final int[] oldIds = ids;
+            final int[] oldWeights = weights;
+            ids = new int[capacity];
+            weights = new int[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldWeights[i] != 0) {
+                    insert(oldIds[i], oldWeights[i]);
+                }
+            }
+        }
+
+        private int distance(int slot) {
+            return (slot - (hash(ids[slot]) & mask)) & mask;
+        }
+
+        private static int hash(int id) {
+            return id ^ (id >>> 16);
+        }
+    }
+
+    /**
+     * Двоичная мин-куча на параллельных массивах: в вершине худший из лучших limit результатов.
+     */
+    private static class TopHits {
+        private final int[] ids;
+        private final double[] scores;
+        private int size;
+
+        TopHits(int limit) {
+            ids = new int[limit];
+            scores = new double[limit];
+        }
+
+        void offer(int id, double score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (worse(ids[0], scores[0], id, score)) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        int[] toSortedIds() {
+            final int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = ids[0];
+                ids[0] = ids[i];
+                scores[0] = scores[i];
+                size = i;
+                siftDown(0);
+            }
+            return result;
+        }
+
+        /**
+         * При равном счете выше стоит задача с меньшим id.
+         */
+        private static boolean worse(int id, double score, int otherId, double otherScore) {
+            return score < otherScore || (score == otherScore && id > otherId);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                final int parent = (index - 1) >>> 1;
+                if (!worse(ids[index], scores[index], ids[parent], scores[parent])) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                final int left = 2 * index + 1;
+                if (left >= size) {
+                    return;
+                }
+                int smallest = left;
+                final int right = left + 1;
+                if (right < size && worse(ids[right], scores[right], ids[left], scores[left])) {
+                    smallest = right;
+                }
+                if (!worse(ids[smallest], scores[smallest], ids[index], scores[index])) {
+                    return;
+                }
+                swap(index, smallest);
+                index = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            final int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            final double score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package service;
+
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+import util.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Вторичный индекс: для каждой пары тип + статус своя карта id -> задача, корзины лежат подряд по типам.
+ * Запрос по статусу стоит O(размер результата), а не O(размер доски).
+ */
+class StatusIndex {
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final List<IntObjectMap<Task>> buckets;
+
+    StatusIndex(Supplier<IntObjectMap<Task>> bucketFactory) {
+        final int count = TaskType.values().length * STATUSES.length;
+        buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buckets.add(bucketFactory.get());
+        }
+    }
+
+    private IntObjectMap<Task> bucket(TaskType type, TaskStatus status) {
+        return buckets.get(type.ordinal() * STATUSES.length + status.ordinal());
+    }
+
+    private List<IntObjectMap<Task>> bucketsOf(TaskType type) {
+        return buckets.subList(type.ordinal() * STATUSES.length, (type.ordinal() + 1) * STATUSES.length);
+    }
+
+    void add(Task task) {
+        if (task.getStatus() != null) {
+            bucket(task.getType(), task.getStatus()).put(task.getId(), task);
+        }
+    }
+
+    /**
+     * Статус мог измениться прямо в объекте, поэтому id убирается из всех корзин своего типа.
+     */
+    void remove(TaskType type, int id) {
+        for (IntObjectMap<Task> bucket : bucketsOf(type)) {
+            bucket.remove(id);
+        }
+    }
+
+    void reindex(Task task) {
+        remove(task.getType(), task.getId());
+        add(task);
+    }
+
+    void clear(TaskType type) {
+        for (IntObjectMap<Task> bucket : bucketsOf(type)) {
+            bucket.clear();
+        }
+    }
+
+    Collection<Task> get(TaskType type, TaskStatus status) {
+        return bucket(type, status).values();
+    }
+
+    int count(TaskType type, TaskStatus status) {
+        return bucket(type, status).size();
+    }
+}
@@ -3,14 +3,19 @@ package service;
 import model.EpicTask;
 import model.Subtask;
 import model.Task;
+import model.TaskStatus;
+import model.TaskType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TaskManager {
 
     List<Task> getHistory();
 
+    List<Task> getHistory(int limit);
+
     Integer getId();
 
     Integer generateId();
@@ -27,6 +32,39 @@ public interface TaskManager {
 
     ArrayList<Subtask> getAllSubtasks();
 
+    ArrayList<Task> getByType(TaskType type);
+
+    ArrayList<Task> getByStatus(TaskType type, TaskStatus status);
+
+    int countByStatus(TaskType type, TaskStatus status);
+
+    /**
+     * Задачи всех типов, в названии или описании которых есть все слова запроса, от более релевантных к менее.
+     */
+    ArrayList<Task> search(String query, int limit);
+
+    /**
+     * Страница задач с id больше afterId по возрастанию id; первая страница — afterId = {@link Page#FIRST_CURSOR}.
+     */
+    Page<Task> getTasks(int afterId, int limit);
+
+    Page<EpicTask> getEpicTasks(int afterId, int limit);
+
+    Page<Subtask> getSubtasks(int afterId, int limit);
+
+    Page<Subtask> getSubtasksOfEpic(Integer id, int afterId, int limit);
+
+    /**
+     * Ленивый обход по возрастанию id: задачи подгружаются страницами по мере чтения потока.
+     */
+    Stream<Task> streamTasks();
+
+    Stream<EpicTask> streamEpicTasks();
+
+    Stream<Subtask> streamSubtasks();
+
+    Stream<Subtask> streamSubtasksOfEpic(Integer id);
+
     Task getTask(Integer id);
 
     EpicTask getEpicTask(Integer id);
@@ -54,4 +92,23 @@ public interface TaskManager {
     void updateEpicTask(EpicTask newEpictask);
 
     void updateEpicTaskStatus(Integer id);
+
+    /**
+     * Проверяет весь пакет целиком и только потом применяет его. Если хоть одна операция недопустима,
+     * бросает InvalidBatchException и ничего не меняет. Если применение все же сорвалось, уже сделанные
+     * операции пакета откатываются. Статус каждого затронутого эпика пересчитывается один раз.
+     */
+    void applyBatch(List<Mutation> batch);
+
+    /**
+     * Открывает транзакцию: изменения, сделанные через менеджер до commit(), откатываются целиком
+     * вызовом rollback() или close() без commit().
+     */
+    Transaction beginTransaction();
+
+    /**
+     * Согласованная неизменяемая версия всех задач. Берется без блокировок и не меняется,
+     * сколько бы ее ни читали, поэтому подходит для долгих отчетов.
+     */
+    TaskSnapshot snapshot();
 }
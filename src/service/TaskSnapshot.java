@@ -0,0 +1,162 @@
+package service;
+
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import util.PersistentIntMap;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Неизменяемая версия доски для отчетов. Менеджер после каждого шага изменения публикует новую версию,
+ * которая делит с предыдущей все, что не поменялось, поэтому снимок берется за O(1), а читатель
+ * не блокирует писателей и не видит их дальнейших изменений. Внутри лежат копии задач, а эпики — неизменяемые
+ * виды {@link EpicTask#frozenView()}, которые делят массив id подзадач, пока привязки эпика не менялись.
+ * Наружу отдаются копии, так что изменять полученные объекты безопасно. У копии эпика нет списка подзадач:
+ * подзадачи эпика в этой версии возвращает {@link #getSubtasksOfEpic(int)}.
+ */
+public final class TaskSnapshot {
+    static final TaskSnapshot EMPTY = new TaskSnapshot(0, PersistentIntMap.empty(), PersistentIntMap.empty(),
+            PersistentIntMap.empty(), PersistentIntMap.empty());
+
+    private final long version;
+    private final PersistentIntMap<Task> tasks;
+    private final PersistentIntMap<EpicTask> epics;
+    private final PersistentIntMap<Subtask> subtasks;
+    private final PersistentIntMap<PersistentIntMap<Subtask>> subtasksByEpic;
+
+    private TaskSnapshot(long version, PersistentIntMap<Task> tasks, PersistentIntMap<EpicTask> epics,
+                         PersistentIntMap<Subtask> subtasks,
+                         PersistentIntMap<PersistentIntMap<Subtask>> subtasksByEpic) {
+        this.version = version;
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+        this.subtasksByEpic = subtasksByEpic;
+    }
+
+    /**
+     * Номер версии: растет с каждым изменением, сделанным через менеджер.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Task getTask(int id) {
+        return copyOf(tasks.get(id));
+    }
+
+    public EpicTask getEpicTask(int id) {
+        final EpicTask epic = epics.get(id);
+        return epic == null ? null : epic.copy();
+    }
+
+    public Subtask getSubtask(int id) {
+        final Subtask subtask = subtasks.get(id);
+        return subtask == null ? null : subtask.copy();
+    }
+
+    public ArrayList<Task> getAllTasks() {
+        return copyAll(tasks);
+    }
+
+    public ArrayList<EpicTask> getAllEpicTasks() {
+        return copyAll(epics);
+    }
+
+    public ArrayList<Subtask> getAllSubtasks() {
+        return copyAll(subtasks);
+    }
+
+    public ArrayList<Subtask> getSubtasksOfEpic(int epicId) {
+        final PersistentIntMap<Subtask> ofEpic = subtasksByEpic.get(epicId);
+        return ofEpic == null ? new ArrayList<>() : copyAll(ofEpic);
+    }
+
+    /**
+     * Хранимая в версии копия задачи без повторного копирования: ее нельзя отдавать наружу для изменения.
+     */
+    Task frozen(TaskType type, int id) {
+        return switch (type) {
+            case TASK -> tasks.get(id);
+            case EPIC -> epics.get(id);
+            case SUBTASK -> subtasks.get(id);
+        };
+    }
+
+    TaskSnapshot with(Task task) {
+        final int id = task.getId();
+        return switch (task.getType()) {
+            case TASK -> new TaskSnapshot(version + 1, tasks.put(id, task.copy()), epics, subtasks, subtasksByEpic);
+            case EPIC -> new TaskSnapshot(version + 1, tasks, epics.put(id, ((EpicTask) task).frozenView()),
+                    subtasks, subtasksByEpic);
+            case SUBTASK -> {
+                final Subtask copy = ((Subtask) task).copy();
+                final Subtask previous = subtasks.get(id);
+                PersistentIntMap<PersistentIntMap<Subtask>> byEpic = subtasksByEpic;
+                if (previous != null && !Objects.equals(previous.getEpicId(), copy.getEpicId())) {
+                    byEpic = unlink(byEpic, previous);
+                }
+                if (copy.getEpicId() != null) {
+                    final PersistentIntMap<Subtask> ofEpic = byEpic.get(copy.getEpicId());
+                    byEpic = byEpic.put(copy.getEpicId(),
+                            (ofEpic == null ? PersistentIntMap.<Subtask>empty() : ofEpic).put(id, copy));
+                }
+                yield new TaskSnapshot(version + 1, tasks, epics, subtasks.put(id, copy), byEpic);
+            }
+        };
+    }
+
+    TaskSnapshot without(TaskType type, int id) {
+        return switch (type) {
+            case TASK -> new TaskSnapshot(version + 1, tasks.remove(id), epics, subtasks, subtasksByEpic);
+            case EPIC -> new TaskSnapshot(version + 1, tasks, epics.remove(id), subtasks, subtasksByEpic.remove(id));
+            case SUBTASK -> {
+                final Subtask previous = subtasks.get(id);
+                if (previous == null) {
+                    yield this;
+                }
+                yield new TaskSnapshot(version + 1, tasks, epics, subtasks.remove(id),
+                        unlink(subtasksByEpic, previous));
+            }
+        };
+    }
+
+    TaskSnapshot cleared(TaskType type) {
+        return switch (type) {
+            case TASK -> new TaskSnapshot(version + 1, PersistentIntMap.empty(), epics, subtasks, subtasksByEpic);
+            case EPIC -> new TaskSnapshot(version + 1, tasks, PersistentIntMap.empty(), subtasks,
+                    PersistentIntMap.empty());
+            case SUBTASK -> new TaskSnapshot(version + 1, tasks, epics, PersistentIntMap.empty(),
+                    PersistentIntMap.empty());
+        };
+    }
+
+    private static PersistentIntMap<PersistentIntMap<Subtask>> unlink(
+            PersistentIntMap<PersistentIntMap<Subtask>> byEpic, Subtask subtask) {
+        if (subtask.getEpicId() == null) {
+            return byEpic;
+        }
+        final PersistentIntMap<Subtask> ofEpic = byEpic.get(subtask.getEpicId());
+        if (ofEpic == null) {
+            return byEpic;
+        }
+        final PersistentIntMap<Subtask> rest = ofEpic.remove(subtask.getId());
+        return rest.isEmpty() ? byEpic.remove(subtask.getEpicId()) : byEpic.put(subtask.getEpicId(), rest);
+    }
+
+    private static Task copyOf(Task task) {
+        return task == null ? null : task.copy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> ArrayList<T> copyAll(PersistentIntMap<T> source) {
+        final ArrayList<T> copies = new ArrayList<>(source.size());
+        for (T task : source) {
+            copies.add((T) task.copy());
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,103 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Единица работы над менеджером. Пока транзакция открыта, менеджер перед первым изменением каждой задачи
+ * кладет в журнал отмены ее исходный объект и копию его полей. rollback() возвращает эти объекты на место,
+ * commit() просто выбрасывает журнал (а файловый менеджер одним блоком пишет накопленные записи).
+ * Незакрытая транзакция откатывается в close(). Выданные id не возвращаются, история просмотров не откатывается.
+ */
+public class Transaction implements AutoCloseable {
+    private final InMemoryTaskManager manager;
+    private final Thread owner = Thread.currentThread();
+    private final Map<Integer, UndoEntry> undoLog = new LinkedHashMap<>();
+    private final TaskSnapshot baseSnapshot;
+    private boolean finished;
+
+    Transaction(InMemoryTaskManager manager, TaskSnapshot baseSnapshot) {
+        this.manager = manager;
+        this.baseSnapshot = baseSnapshot;
+    }
+
+    /**
+     * Для оберток вроде замеряющей в {@link MetricsTaskManager}: обертка переопределяет открытые методы
+     * и передает их транзакции менеджера, а собственного журнала отмены у нее нет.
+     */
+    Transaction() {
+        this(null, null);
+    }
+
+    public void commit() {
+        finish();
+        manager.commitTransaction(this);
+    }
+
+    public void rollback() {
+        finish();
+        manager.rollbackTransaction(this);
+    }
+
+    @Override
+    public void close() {
+        if (!finished) {
+            rollback();
+        }
+    }
+
+    public boolean isActive() {
+        return !finished;
+    }
+
+    boolean isOwnedByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    TaskSnapshot getBaseSnapshot() {
+        return baseSnapshot;
+    }
+
+    boolean isRecorded(int id) {
+        return undoLog.containsKey(id);
+    }
+
+    void record(TaskType type, int id, Task original, Task before) {
+        undoLog.put(id, new UndoEntry(type, id, original, before));
+    }
+
+    Collection<UndoEntry> getUndoLog() {
+        return undoLog.values();
+    }
+
+    private void finish() {
+        if (finished) {
+            throw new IllegalStateException("Транзакция уже завершена.");
+        }
+        if (!isOwnedByCurrentThread()) {
+            throw new IllegalStateException("Транзакцию завершает только открывший ее поток.");
+        }
+        finished = true;
+    }
+
+    /**
+     * original — объект, лежавший в хранилище до транзакции (null, если задачи не было), before — копия его полей.
+     */
+    static class UndoEntry {
+        final TaskType type;
+        final int id;
+        final Task original;
+        final Task before;
+
+        UndoEntry(TaskType type, int id, Task original, Task before) {
+            this.type = type;
+            this.id = id;
+            this.original = original;
+            this.before = before;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package storage;
+
+/**
+ * Режим сброса журнала на диск.
+ * <ul>
+ *     <li>{@link #sync()} — запись и fsync до возврата из мутирующего метода,
+ *     переживает падение процесса и ОС.</li>
+ *     <li>{@link #groupCommit(long, int)} — записи копятся в памяти и сбрасываются с fsync
+ *     фоновым потоком раз в intervalMillis или вызывающим, набравшим maxOps записей.
+ *     При сбое теряется не больше последних intervalMillis или maxOps записей.</li>
+ *     <li>{@link #async()} — записи копятся в памяти до явного flush() или close();
+ *     при переполнении буфера сбрасываются в ОС без fsync.
+ *     До flush() гарантий нет.</li>
+ * </ul>
+ */
+public final class Durability {
+    private static final Durability SYNC = new Durability(DurabilityMode.SYNC, 0, 1);
+    private static final Durability ASYNC = new Durability(DurabilityMode.ASYNC, 0, Integer.MAX_VALUE);
+
+    private final DurabilityMode mode;
+    private final long intervalMillis;
+    private final int maxOps;
+
+    private Durability(DurabilityMode mode, long intervalMillis, int maxOps) {
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+        this.maxOps = maxOps;
+    }
+
+    public static Durability sync() {
+        return SYNC;
+    }
+
+    public static Durability groupCommit(long intervalMillis, int maxOps) {
+        if (intervalMillis <= 0 || maxOps <= 0) {
+            throw new IllegalArgumentException("Интервал и размер группы должны быть положительными.");
+        }
+        return new Durability(DurabilityMode.GROUP_COMMIT, intervalMillis, maxOps);
+    }
+
+    public static Durability async() {
+        return ASYNC;
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getMaxOps() {
+        return maxOps;
+    }
+
+    @Override
+    public String toString() {
+        return "Durability{" +
+                "mode=" + mode +
+                ", intervalMillis=" + intervalMillis +
+                ", maxOps=" + maxOps +
+                '}';
+    }
+}
@@ -0,0 +1,7 @@
+package storage;
+
+public enum DurabilityMode {
+    SYNC,
+    GROUP_COMMIT,
+    ASYNC
+}
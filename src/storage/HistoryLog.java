@@ -0,0 +1,115 @@
+package storage;
+
+import exceptions.SavingToFileException;
+import mappers.TaskSerializer;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Журнал истории просмотров рядом со снимком: просмотр дописывает PUT с просмотренной версией задачи,
+ * удаление из истории — DELETE. Когда записей набирается вдвое больше, чем было при прошлой перезаписи,
+ * плюс MIN_COMPACTION_RECORDS, файл переписывается текущей историей. Поэтому размер файла и время
+ * восстановления ограничены емкостью истории, а не числом просмотров или размером доски.
+ */
+public class HistoryLog {
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final File file;
+    private final Durability durability;
+    private final TaskSerializer serializer;
+    private TaskJournal journal;
+    private int records;
+    private volatile long rewrittenBytes;
+    private volatile long closedJournalBytes;
+    private int compactAt = MIN_COMPACTION_RECORDS;
+
+    public HistoryLog(File file, Durability durability, TaskSerializer serializer) {
+        this.file = file;
+        this.durability = durability;
+        this.serializer = serializer;
+        this.journal = new TaskJournal(file, durability, serializer);
+    }
+
+    public static File historyFileFor(File backupFile) {
+        return new File(backupFile.getPath() + ".history");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void append(JournalRecord record) {
+        journal.append(record);
+        records++;
+    }
+
+    /**
+     * Байты, записанные в файл истории: дописанные записи и перезаписи целиком.
+     */
+    public long getBytesWritten() {
+        return closedJournalBytes + journal.getBytesWritten() + rewrittenBytes;
+    }
+
+    public boolean needsCompaction() {
+        return records >= compactAt;
+    }
+
+    /**
+     * Заменяет файл записями PUT для переданной истории, от старых просмотров к новым.
+     */
+    public void rewrite(List<Task> history) {
+        journal.close();
+        closedJournalBytes += journal.getBytesWritten();
+        try {
+            rewrittenBytes += SnapshotCompactor.writeAtomically(file, serializer, history);
+        } catch (IOException e) {
+            throw new SavingToFileException("Ошибка записи истории просмотров в файл " + file, e);
+        }
+        journal = new TaskJournal(file, durability, serializer);
+        records = history.size();
+        compactAt = 2 * records + MIN_COMPACTION_RECORDS;
+    }
+
+    /**
+     * Проигрывает записи файла и отрезает оборванный хвост. Возвращает true, если файл записан
+     * другим форматом и его нужно переписать, прежде чем дописывать.
+     */
+    public boolean replay(Consumer<JournalRecord> consumer) throws IOException {
+        if (file.length() == 0) {
+            return false;
+        }
+        final TaskSerializer fileSerializer;
+        final long validLength;
+        final long fileLength;
+        try (RecordReader reader = new RecordReader(file)) {
+            fileSerializer = reader.getSerializer();
+            JournalRecord record;
+            while ((record = reader.next()) != null) {
+                consumer.accept(record);
+                records++;
+            }
+            validLength = reader.getValidLength();
+            fileLength = reader.getFileLength();
+        }
+        compactAt = Math.max(compactAt, 2 * records + MIN_COMPACTION_RECORDS);
+        if (fileSerializer.getClass() != serializer.getClass()) {
+            return true;
+        }
+        if (validLength < fileLength) {
+            journal.truncate(validLength);
+        }
+        return false;
+    }
+
+    public void flush() {
+        journal.flush();
+    }
+
+    public void close() {
+        journal.close();
+    }
+}
@@ -0,0 +1,7 @@
+package storage;
+
+public enum JournalOperation {
+    PUT,
+    DELETE,
+    CLEAR
+}
@@ -0,0 +1,55 @@
+package storage;
+
+import model.Task;
+import model.TaskType;
+
+public class JournalRecord {
+    private final JournalOperation operation;
+    private final Task task;
+    private final int id;
+    private final TaskType type;
+
+    private JournalRecord(JournalOperation operation, Task task, int id, TaskType type) {
+        this.operation = operation;
+        this.task = task;
+        this.id = id;
+        this.type = type;
+    }
+
+    public static JournalRecord put(Task task) {
+        return new JournalRecord(JournalOperation.PUT, task, task.getId(), task.getType());
+    }
+
+    public static JournalRecord delete(int id) {
+        return new JournalRecord(JournalOperation.DELETE, null, id, null);
+    }
+
+    public static JournalRecord clear(TaskType type) {
+        return new JournalRecord(JournalOperation.CLEAR, null, 0, type);
+    }
+
+    public JournalOperation getOperation() {
+        return operation;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord{" +
+                "operation=" + operation +
+                ", id=" + id +
+                ", type=" + type +
+                '}';
+    }
+}
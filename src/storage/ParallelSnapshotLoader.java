@@ -0,0 +1,171 @@
+package storage;
+
+import exceptions.LoadingFromFileException;
+import mappers.TaskSerializer;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельное декодирование снимка. Файл один раз просматривается без декодирования и режется
+ * на куски по границам записей, затем куски декодируются в {@link ForkJoinPool}.
+ * Порядок записей в снимке не важен (там только PUT), поэтому куски независимы.
+ * Правило для поврежденных записей то же, что у {@link RecordReader}: нечитаемый хвост файла отбрасывается,
+ * а нечитаемая запись, за которой есть целые, означает поврежденный файл.
+ */
+public class ParallelSnapshotLoader {
+    public static final long DEFAULT_CHUNK_BYTES = 4L << 20;
+
+    private final File file;
+    private final long chunkBytes;
+    private final ForkJoinPool pool;
+
+    public ParallelSnapshotLoader(File file, ForkJoinPool pool) {
+        this(file, DEFAULT_CHUNK_BYTES, pool);
+    }
+
+    public ParallelSnapshotLoader(File file, long chunkBytes, ForkJoinPool pool) {
+        this.file = file;
+        this.chunkBytes = chunkBytes;
+        this.pool = pool;
+    }
+
+    /**
+     * Возвращает задачи снимка по кускам в порядке следования в файле.
+     */
+    public List<List<Task>> load() throws IOException {
+        final TaskSerializer serializer;
+        final List<long[]> bounds = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(file)) {
+            serializer = reader.getSerializer();
+            long chunkStart = reader.getPosition();
+            while (reader.skip()) {
+                if (reader.getPosition() - chunkStart >= chunkBytes) {
+                    bounds.add(new long[]{chunkStart, reader.getPosition()});
+                    chunkStart = reader.getPosition();
+                }
+            }
+            if (chunkStart < reader.getFileLength()) {
+                bounds.add(new long[]{chunkStart, reader.getFileLength()});
+            }
+        }
+
+        final Chunk[] chunks = new Chunk[bounds.size()];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = new Chunk(channel, serializer, bounds.get(i)[0], bounds.get(i)[1]);
+            }
+            if (chunks.length > 0) {
+                try {
+                    pool.invoke(new DecodeAction(chunks, 0, chunks.length));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (LoadingFromFileException e) {
+                    throw new LoadingFromFileException("Снимок " + file + " поврежден: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        final List<List<Task>> result = new ArrayList<>(chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            result.add(chunks[i].tasks);
+            if (!chunks[i].complete) {
+                for (int j = i; j < chunks.length; j++) {
+                    if (chunks[j].recordFollows || j > i && !chunks[j].tasks.isEmpty()) {
+                        throw new LoadingFromFileException("Снимок " + file + " поврежден: за нечитаемой записью"
+                                + " в куске с " + chunks[i].start + " по " + chunks[i].end + " идут целые записи.");
+                    }
+                }
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static class Chunk {
+        final FileChannel channel;
+        final TaskSerializer serializer;
+        final long start;
+        final long end;
+        List<Task> tasks;
+        boolean complete;
+        boolean recordFollows;
+
+        Chunk(FileChannel channel, TaskSerializer serializer, long start, long end) {
+            this.channel = channel;
+            this.serializer = serializer;
+            this.start = start;
+            this.end = end;
+        }
+
+        void decode() throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            tasks = new ArrayList<>();
+            JournalRecord record;
+            while ((record = serializer.read(buffer)) != null) {
+                if (record.getOperation() != JournalOperation.PUT) {
+                    break;
+                }
+                tasks.add(record.getTask());
+            }
+            complete = !buffer.hasRemaining();
+            if (!complete) {
+                recordFollows = recordFollows(buffer);
+            }
+        }
+
+        private boolean recordFollows(ByteBuffer buffer) {
+            for (int position = buffer.position() + 1; position < buffer.limit(); position++) {
+                buffer.position(position);
+                final JournalRecord record = serializer.read(buffer);
+                if (record != null && record.getOperation() == JournalOperation.PUT) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class DecodeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+        DecodeAction(Chunk[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    chunks[from].decode();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new DecodeAction(chunks, from, mid), new DecodeAction(chunks, mid, to));
+        }
+    }
+}
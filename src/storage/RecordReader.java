@@ -0,0 +1,162 @@
+package storage;
+
+import exceptions.LoadingFromFileException;
+import mappers.TaskSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Потоковое чтение записей снимка или журнала через {@link FileChannel}.
+ * В памяти держится только окно файла, которое растет лишь под запись длиннее окна
+ * и не больше {@link TaskSerializer#MAX_RECORD_BYTES}, поэтому расход кучи не зависит от размера файла.
+ * Нечитаемая запись считается оборванным хвостом, только если за ней в файле нет ни одной целой записи,
+ * иначе файл поврежден посередине и чтение прерывается {@link LoadingFromFileException}.
+ * Целая запись с верной контрольной суммой, которая не разбирается, — всегда повреждение, а не хвост.
+ */
+public class RecordReader implements AutoCloseable {
+    private static final int WINDOW_BYTES = 1 << 20;
+
+    private final File file;
+    private final FileChannel channel;
+    private final TaskSerializer serializer;
+    private ByteBuffer window = ByteBuffer.allocateDirect(WINDOW_BYTES).flip();
+    private long windowOffset;
+    private long validLength;
+    private boolean endOfFile;
+
+    public RecordReader(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            fill();
+            this.serializer = TaskSerializer.detect(window);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.validLength = windowOffset + window.position();
+    }
+
+    public TaskSerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Смещение в файле сразу за последней успешно прочитанной записью.
+     */
+    public long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Смещение в файле начала следующей непрочитанной записи.
+     */
+    public long getPosition() {
+        return windowOffset + window.position();
+    }
+
+    public long getFileLength() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Возвращает следующую запись или null, если файл закончился либо дальше идет оборванный хвост:
+     * неполная запись или запись с несошедшейся контрольной суммой, за которой нет целых записей.
+     */
+    public JournalRecord next() throws IOException {
+        final int frameLength = frameLength();
+        if (!window.hasRemaining()) {
+            return null;
+        }
+        final JournalRecord record;
+        try {
+            record = frameLength == 0 ? null : serializer.read(window);
+        } catch (LoadingFromFileException e) {
+            throw new LoadingFromFileException("Файл " + file + " поврежден на смещении " + getPosition() + ": "
+                    + e.getMessage(), e);
+        }
+        if (record != null) {
+            validLength = windowOffset + window.position();
+            return record;
+        }
+        if (recordFollows()) {
+            throw new LoadingFromFileException("Файл " + file + " поврежден: за нечитаемой записью на смещении "
+                    + validLength + " идут целые записи.");
+        }
+        return null;
+    }
+
+    /**
+     * Пропускает следующую запись, не декодируя ее и не проверяя контрольную сумму.
+     * Возвращает false, если целой записи дальше нет.
+     */
+    public boolean skip() throws IOException {
+        final int frameLength = frameLength();
+        if (frameLength <= 0) {
+            return false;
+        }
+        window.position(window.position() + frameLength);
+        return true;
+    }
+
+    private int frameLength() throws IOException {
+        int frameLength;
+        while ((frameLength = serializer.frameLength(window)) < 0 && fill()) {
+            // дочитываем, пока запись не поместится в окно или файл не кончится
+        }
+        return frameLength;
+    }
+
+    /**
+     * Ищет целую запись, начиная со следующего байта после текущей позиции, до конца файла.
+     * Позиция при этом теряется, поэтому вызывается, только когда чтение уже закончено.
+     */
+    private boolean recordFollows() throws IOException {
+        window.position(window.position() + 1);
+        while (window.hasRemaining() || fill()) {
+            if (frameLength() != 0 && serializer.read(window) != null) {
+                return true;
+            }
+            window.position(window.position() + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Дочитывает файл в окно. Возвращает false, если новых байт нет: файл кончился
+     * или окно уже не меньше наибольшей записи и остатка файла.
+     */
+    private boolean fill() throws IOException {
+        if (endOfFile) {
+            return false;
+        }
+        windowOffset += window.position();
+        window.compact();
+        if (!window.hasRemaining()) {
+            final long rest = Math.min(channel.size() - windowOffset, TaskSerializer.MAX_RECORD_BYTES);
+            if (window.capacity() >= rest) {
+                window.flip();
+                return false;
+            }
+            final ByteBuffer wider = ByteBuffer.allocateDirect((int) Math.min(rest, window.capacity() * 2L));
+            window.flip();
+            wider.put(window);
+            window = wider;
+        }
+        final int read = channel.read(window);
+        if (read < 0) {
+            endOfFile = true;
+        }
+        window.flip();
+        return read > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
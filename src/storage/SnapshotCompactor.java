@@ -0,0 +1,158 @@
+package storage;
+
+import exceptions.SavingToFileException;
+import mappers.TaskSerializer;
+import model.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пишет свежий снимок в фоне и убирает отработанный журнал.
+ * Снимок пишется во временный файл, синхронизируется с диском и атомарно подменяет backupFile,
+ * поэтому сбой посреди записи оставляет на диске предыдущий целый снимок.
+ * Перед запуском вызывающий переименовывает текущий журнал в retired-файл,
+ * поэтому новые записи идут в пустой журнал и не ждут окончания компакции.
+ * Записи журнала идемпотентны, поэтому повторное проигрывание retired-журнала
+ * поверх нового снимка после сбоя не меняет состояние.
+ */
+public class SnapshotCompactor {
+    private final File backupFile;
+    private final File retiredJournal;
+    private final TaskSerializer serializer;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private ExecutorService executor;
+    private Future<?> inFlight;
+
+    public SnapshotCompactor(File backupFile, File journalFile, TaskSerializer serializer) {
+        this.backupFile = backupFile;
+        this.retiredJournal = retiredJournalFileFor(journalFile);
+        this.serializer = serializer;
+    }
+
+    public static File retiredJournalFileFor(File journalFile) {
+        return new File(journalFile.getPath() + ".old");
+    }
+
+    public File getRetiredJournal() {
+        return retiredJournal;
+    }
+
+    /**
+     * Сколько байт занимали все записанные снимки, включая фоновые.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public boolean isRunning() {
+        return inFlight != null && !inFlight.isDone();
+    }
+
+    public void compactInBackground(List<Task> state) {
+        awaitCompletion();
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-compactor-" + backupFile.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        inFlight = executor.submit(() -> writeSnapshot(state));
+    }
+
+    public void compact(List<Task> state) {
+        awaitCompletion();
+        writeSnapshot(state);
+    }
+
+    public void awaitCompletion() {
+        if (inFlight == null) {
+            return;
+        }
+        try {
+            inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SavingToFileException("Ожидание компакции снимка прервано.", e);
+        } catch (ExecutionException e) {
+            throw new SavingToFileException("Ошибка фоновой компакции снимка.", e.getCause());
+        } finally {
+            inFlight = null;
+        }
+    }
+
+    public void close() {
+        try {
+            awaitCompletion();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    private void writeSnapshot(List<Task> state) {
+        try {
+            bytesWritten.addAndGet(writeAtomically(backupFile, serializer, state));
+            Files.deleteIfExists(retiredJournal.toPath());
+        } catch (IOException e) {
+            throw new SavingToFileException("Ошибка записи снимка задач в файл " + backupFile, e);
+        }
+    }
+
+    /**
+     * Пишет задачи во временный файл, синхронизирует его с диском и атомарно подменяет им target.
+     * Возвращает размер записанного файла.
+     */
+    public static long writeAtomically(File file, TaskSerializer serializer, List<Task> tasks) throws IOException {
+        final Path target = file.toPath();
+        final Path tmp = new File(file.getPath() + ".tmp").toPath();
+        final long written;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+            out.write(serializer.getHeader());
+            for (final Task task : tasks) {
+                serializer.write(JournalRecord.put(task), out);
+            }
+            out.flush();
+            channel.force(true);
+            written = channel.size();
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(target.toAbsolutePath().getParent());
+        return written;
+    }
+
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // не все ОС позволяют открыть каталог, переименование при этом все равно атомарно
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package storage;
+
+import exceptions.SavingToFileException;
+import mappers.CSVTaskSerializer;
+import mappers.TaskSerializer;
+import util.LatencyHistogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Журнал изменений: каждая мутация дописывается в конец файла одной записью с CRC32
+ * в формате {@link TaskSerializer}, поэтому стоимость записи не зависит от размера доски.
+ * Записи сначала попадают в буфер, а на диск уходят согласно {@link Durability}.
+ */
+public class TaskJournal {
+    private static final int ASYNC_SPILL_BYTES = 1 << 20;
+
+    private final File file;
+    private final Durability durability;
+    private final TaskSerializer serializer;
+    private final Object bufferLock = new Object();
+    private final Object ioLock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final LatencyHistogram appendTimes = new LatencyHistogram();
+    private final LatencyHistogram forceTimes = new LatencyHistogram();
+    private int pendingOps;
+    private long size = -1;
+    private FileChannel channel;
+    private volatile ScheduledExecutorService flusher;
+    private volatile RuntimeException flushFailure;
+
+    public TaskJournal(File file) {
+        this(file, Durability.sync(), new CSVTaskSerializer());
+    }
+
+    public TaskJournal(File file, Durability durability, TaskSerializer serializer) {
+        this.file = file;
+        this.durability = durability;
+        this.serializer = serializer;
+    }
+
+    public static File journalFileFor(File backupFile) {
+        return new File(backupFile.getPath() + ".journal");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Сколько байт журнал записал в файл за время жизни объекта, включая записи в уже переименованные файлы.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Время appendAll() для вызывающего в наносекундах: кодирование записей, а в режиме sync
+     * и в полной группе еще запись в файл и fsync.
+     */
+    public LatencyHistogram.Snapshot getAppendTimes() {
+        return appendTimes.snapshot();
+    }
+
+    /**
+     * Длительность каждого fsync журнала в наносекундах, в том числе из фонового потока group commit.
+     */
+    public LatencyHistogram.Snapshot getForceTimes() {
+        return forceTimes.snapshot();
+    }
+
+    public long size() {
+        synchronized (bufferLock) {
+            if (size < 0) {
+                size = file.length();
+            }
+            return size;
+        }
+    }
+
+    public void append(JournalRecord record) {
+        appendAll(List.of(record));
+    }
+
+    /**
+     * Дописывает записи одним блоком: в режиме sync это одна запись на диск и один fsync на весь блок.
+     */
+    public void appendAll(List<JournalRecord> records) {
+        final long start = System.nanoTime();
+        rethrowFlushFailure();
+        final int bufferedOps;
+        final int bufferedBytes;
+        synchronized (bufferLock) {
+            final int before = pending.size();
+            if (size() == 0 && before == 0) {
+                pending.writeBytes(serializer.getHeader());
+            }
+            try {
+                for (JournalRecord record : records) {
+                    serializer.write(record, pending);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Уже закодированные записи блока не должны уйти в файл со следующим сбросом.
+                final byte[] kept = Arrays.copyOf(pending.toByteArray(), before);
+                pending.reset();
+                pending.writeBytes(kept);
+                if (e instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new SavingToFileException("Ошибка кодирования записи журнала.", e);
+            }
+            size = size() + pending.size() - before;
+            pendingOps += records.size();
+            bufferedOps = pendingOps;
+            bufferedBytes = pending.size();
+        }
+
+        switch (durability.getMode()) {
+            case SYNC -> writePending(true);
+            case GROUP_COMMIT -> {
+                startFlusher();
+                if (bufferedOps >= durability.getMaxOps()) {
+                    writePending(true);
+                }
+            }
+            case ASYNC -> {
+                if (bufferedBytes >= ASYNC_SPILL_BYTES) {
+                    writePending(false);
+                }
+            }
+        }
+        appendTimes.record(System.nanoTime() - start);
+    }
+
+    public void flush() {
+        rethrowFlushFailure();
+        writePending(true);
+    }
+
+    public void truncate(long validLength) {
+        synchronized (ioLock) {
+            closeChannel();
+            try (FileChannel truncating = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                truncating.truncate(validLength);
+                truncating.force(false);
+            } catch (IOException e) {
+                throw new SavingToFileException("Не удалось отрезать оборванный хвост журнала " + file, e);
+            }
+            synchronized (bufferLock) {
+                size = validLength;
+            }
+        }
+    }
+
+    public void rotateTo(File retired) {
+        synchronized (ioLock) {
+            writePending(true);
+            closeChannel();
+            try {
+                if (file.exists()) {
+                    Files.move(file.toPath(), retired.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                throw new SavingToFileException("Не удалось переименовать журнал изменений " + file, e);
+            }
+            synchronized (bufferLock) {
+                size = 0;
+            }
+        }
+    }
+
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        synchronized (ioLock) {
+            try {
+                writePending(true);
+            } finally {
+                closeChannel();
+            }
+        }
+    }
+
+    private void writePending(boolean force) {
+        synchronized (ioLock) {
+            final byte[] batch;
+            synchronized (bufferLock) {
+                if (pendingOps == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                pendingOps = 0;
+            }
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                bytesWritten.addAndGet(batch.length);
+                if (force) {
+                    final long forceStart = System.nanoTime();
+                    channel.force(false);
+                    forceTimes.record(System.nanoTime() - forceStart);
+                }
+            } catch (IOException e) {
+                throw new SavingToFileException("Ошибка записи в журнал изменений.", e);
+            }
+        }
+    }
+
+    private void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        synchronized (ioLock) {
+            if (flusher != null) {
+                return;
+            }
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher-" + file.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            final long interval = durability.getIntervalMillis();
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    writePending(true);
+                } catch (RuntimeException e) {
+                    flushFailure = e;
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rethrowFlushFailure() {
+        final RuntimeException failure = flushFailure;
+        if (failure != null) {
+            flushFailure = null;
+            throw failure;
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new SavingToFileException("Ошибка закрытия журнала изменений.", e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+}
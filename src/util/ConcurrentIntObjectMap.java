@@ -0,0 +1,55 @@
+package util;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Потокобезопасная версия {@link IntObjectMap} поверх ConcurrentHashMap: чтение не берет блокировок,
+ * обход values() слабо согласован и не бросает ConcurrentModificationException.
+ * Ключи здесь упаковываются — это плата за неблокирующее чтение из нескольких потоков.
+ */
+public class ConcurrentIntObjectMap<V> implements IntObjectMap<V> {
+    private final ConcurrentHashMap<Integer, V> map = new ConcurrentHashMap<>();
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V get(int key) {
+        return map.get(key);
+    }
+
+    @Override
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "Значение не может быть null.");
+        return map.put(key, value);
+    }
+
+    @Override
+    public V remove(int key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map.values();
+    }
+}
@@ -0,0 +1,251 @@
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Хеш-таблица с ключами int и открытой адресацией (линейное пробирование).
+ * Ключи хранятся в int[], значения в Object[], поэтому на запись не создаются ни узел, ни Integer.
+ * Значения null не допускаются: пустая ячейка — это ячейка с null в массиве значений.
+ * Хеш такой же, как у HashMap для Integer, поэтому последовательные id обходятся по возрастанию.
+ * Вставка по схеме Robin Hood: ключ, ушедший от своей ячейки дальше, вытесняет ключ, ушедший меньше.
+ * Поэтому поиск отсутствующего ключа и сдвиг при удалении останавливаются на ключе, стоящем на своем месте,
+ * а не идут до конца кластера, который у последовательных id занимает всю таблицу.
+ */
+public class IntObjectHashMap<V> implements IntObjectMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private int modCount;
+
+    public IntObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "Значение не может быть null.");
+        final int index = indexOf(key);
+        if (index >= 0) {
+            final V previous = (V) values[index];
+            values[index] = value;
+            return previous;
+        }
+        insert(key, value);
+        modCount++;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = (V) values[index];
+        shiftBack(index);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * Не обнуляет старую таблицу, а заменяет ее пустой минимального размера: очистка большой таблицы
+     * не зависит от числа элементов, а память сразу освобождается.
+     */
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        allocate(DEFAULT_CAPACITY);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Живое представление значений. Итератор не поддерживает удаление
+     * и бросает ConcurrentModificationException, если таблица изменилась во время обхода.
+     */
+    @Override
+    public Collection<V> values() {
+        return new Values();
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        for (int distance = 0; values[index] != null && distance <= distance(index); distance++) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int key, Object value) {
+        int index = hash(key) & mask;
+        int distance = 0;
+        while (values[index] != null) {
+            final int existingDistance = distance(index);
+            if (existingDistance < distance) {
+                final int displacedKey = keys[index];
+                final Object displacedValue = values[index];
+                keys[index] = key;
+                values[index] = value;
+                key = displacedKey;
+                value = displacedValue;
+                distance = existingDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    /**
+     * Насколько ключ в ячейке index ушел от своей идеальной ячейки.
+     */
+    private int distance(int index) {
+        return (index - (hash(keys[index]) & mask)) & mask;
+    }
+
+    /**
+     * Удаление без надгробий: следующие ключи сдвигаются на шаг назад, пока не встретится пустая ячейка
+     * или ключ на своем месте.
+     */
+    private void shiftBack(int gap) {
+        int index = (gap + 1) & mask;
+        while (values[index] != null && distance(index) != 0) {
+            keys[gap] = keys[index];
+            values[gap] = values[index];
+            gap = index;
+            index = (index + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Превышен максимальный размер таблицы.");
+        }
+        final int[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity == MAX_CAPACITY ? capacity - 1 : capacity / 4 * 3;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Ожидаемый размер не может быть отрицательным.");
+        }
+        final long required = (long) Math.ceil(expectedSize / 0.75) + 1;
+        if (required >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Math.max(DEFAULT_CAPACITY, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    private class Values extends AbstractCollection<V> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<>() {
+                private final Object[] table = values;
+                private final int expectedModCount = modCount;
+                private int index = advance(0);
+
+                private int advance(int from) {
+                    while (from < table.length && table[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return index < table.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (index >= table.length) {
+                        throw new NoSuchElementException();
+                    }
+                    final V value = (V) table[index];
+                    index = advance(index + 1);
+                    return value;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package util;
+
+import java.util.Collection;
+
+/**
+ * Отображение с ключами int. Реализации не обязаны допускать значения null.
+ */
+public interface IntObjectMap<V> {
+    int size();
+
+    boolean isEmpty();
+
+    boolean containsKey(int key);
+
+    V get(int key);
+
+    V put(int key, V value);
+
+    V remove(int key);
+
+    void clear();
+
+    Collection<V> values();
+}
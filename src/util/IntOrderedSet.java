@@ -0,0 +1,330 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Множество int, которое помнит порядок добавления. Значения лежат подряд в массиве, а хеш-индекс
+ * значение -> позиция дает contains и remove за O(1) без объектов-оберток. Удаление только помечает позицию;
+ * когда помеченных становится больше, чем живых, массив уплотняется на месте, так что удаление в среднем O(1).
+ * Если значения добавляются по возрастанию, массив остается отсортированным
+ * и {@link #after(int, int)} находит место курсора двоичным поиском.
+ */
+public class IntOrderedSet {
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int EMPTY = -1;
+
+    private int[] items;
+    private boolean[] removed;
+    private int length;
+    private int size;
+    private int[] keys;
+    private int[] positions;
+    private int mask;
+    private int modCount;
+
+    public IntOrderedSet() {
+        items = new int[DEFAULT_CAPACITY];
+        removed = new boolean[DEFAULT_CAPACITY];
+        allocateIndex(DEFAULT_CAPACITY * 2);
+    }
+
+    public IntOrderedSet(IntOrderedSet source) {
+        final int capacity = Math.max(DEFAULT_CAPACITY, source.size);
+        items = new int[capacity];
+        removed = new boolean[capacity];
+        allocateIndex(Integer.highestOneBit(capacity - 1) << 2);
+        // Значения источника различны и помещаются без роста, поэтому они дописываются мимо add().
+        for (int i = 0; i < source.length; i++) {
+            if (!source.removed[i]) {
+                items[length] = source.items[i];
+                insertIntoIndex(source.items[i], length);
+                length++;
+            }
+        }
+        size = length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int value) {
+        return slotOf(value) >= 0;
+    }
+
+    /**
+     * Добавляет значение в конец. Возвращает false, если оно уже есть: порядок при этом не меняется.
+     */
+    public boolean add(int value) {
+        if (contains(value)) {
+            return false;
+        }
+        if (length == items.length) {
+            items = Arrays.copyOf(items, length * 2);
+            removed = Arrays.copyOf(removed, length * 2);
+        }
+        items[length] = value;
+        removed[length] = false;
+        insertIntoIndex(value, length);
+        length++;
+        size++;
+        modCount++;
+        if (length * 2 > keys.length) {
+            allocateIndex(keys.length * 2);
+            reindex();
+        }
+        return true;
+    }
+
+    public boolean remove(int value) {
+        final int slot = slotOf(value);
+        if (slot < 0) {
+            return false;
+        }
+        final int position = positions[slot];
+        deleteFromIndex(slot);
+        removed[position] = true;
+        size--;
+        modCount++;
+        while (length > 0 && removed[length - 1]) {
+            length--;
+        }
+        if (length - size > size && length > DEFAULT_CAPACITY) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Добавляет значение так, чтобы возрастающий порядок сохранился. Значение больше последнего дописывается
+     * в конец за O(1), меньшее вставляется на свое место со сдвигом хвоста и перестройкой индекса за O(n).
+     */
+    public boolean addInOrder(int value) {
+        if (length == 0 || items[length - 1] < value) {
+            return add(value);
+        }
+        if (contains(value)) {
+            return false;
+        }
+        if (length == items.length) {
+            items = Arrays.copyOf(items, length * 2);
+            removed = Arrays.copyOf(removed, length * 2);
+        }
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (items[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        System.arraycopy(items, low, items, low + 1, length - low);
+        System.arraycopy(removed, low, removed, low + 1, length - low);
+        items[low] = value;
+        removed[low] = false;
+        length++;
+        size++;
+        modCount++;
+        if (length * 2 > keys.length) {
+            allocateIndex(keys.length * 2);
+        }
+        reindex();
+        return true;
+    }
+
+    public void clear() {
+        if (length == 0) {
+            return;
+        }
+        Arrays.fill(positions, EMPTY);
+        length = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Не больше limit значений, идущих после afterValue. Требует, чтобы значения добавлялись по возрастанию.
+     */
+    public int[] after(int afterValue, int limit) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (items[middle] <= afterValue) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        final int[] result = new int[Math.min(limit, size)];
+        int count = 0;
+        for (int i = low; i < length && count < result.length; i++) {
+            if (!removed[i]) {
+                result[count++] = items[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public int[] toArray() {
+        return after(Integer.MIN_VALUE, size);
+    }
+
+    /**
+     * Представление только для чтения в порядке добавления, отражающее дальнейшие изменения.
+     */
+    public List<Integer> asList() {
+        return new View();
+    }
+
+    private int slotOf(int value) {
+        int slot = hash(value) & mask;
+        for (int distance = 0; positions[slot] != EMPTY && distance <= distance(slot); distance++) {
+            if (keys[slot] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Вставка и удаление по схеме Robin Hood, как в {@link IntObjectHashMap}.
+     */
+    private void insertIntoIndex(int value, int position) {
+        int slot = hash(value) & mask;
+        int distance = 0;
+        while (positions[slot] != EMPTY) {
+            final int existingDistance = distance(slot);
+            if (existingDistance < distance) {
+                final int displacedValue = keys[slot];
+                final int displacedPosition = positions[slot];
+                keys[slot] = value;
+                positions[slot] = position;
+                value = displacedValue;
+                position = displacedPosition;
+                distance = existingDistance;
+            }
+            slot = (slot + 1) & mask;
+            distance++;
+        }
+        keys[slot] = value;
+        positions[slot] = position;
+    }
+
+    private void deleteFromIndex(int gap) {
+        int slot = (gap + 1) & mask;
+        while (positions[slot] != EMPTY && distance(slot) != 0) {
+            keys[gap] = keys[slot];
+            positions[gap] = positions[slot];
+            gap = slot;
+            slot = (slot + 1) & mask;
+        }
+        positions[gap] = EMPTY;
+    }
+
+    private int distance(int slot) {
+        return (slot - (hash(keys[slot]) & mask)) & mask;
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                items[live] = items[i];
+                removed[live] = false;
+                live++;
+            }
+        }
+        length = live;
+        reindex();
+    }
+
+    private void reindex() {
+        Arrays.fill(positions, EMPTY);
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                insertIntoIndex(items[i], i);
+            }
+        }
+    }
+
+    private void allocateIndex(int capacity) {
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int hash(int value) {
+        return value ^ (value >>> 16);
+    }
+
+    private class View extends AbstractList<Integer> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Индекс " + index + " вне границ 0.." + size + ".");
+            }
+            if (length == size) {
+                return items[index];
+            }
+            int live = -1;
+            for (int i = 0; i < length; i++) {
+                if (!removed[i] && ++live == index) {
+                    return items[i];
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<>() {
+                private final int expectedModCount = modCount;
+                private int position = advance(0);
+
+                private int advance(int from) {
+                    while (from < length && removed[from]) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return position < length;
+                }
+
+                @Override
+                public Integer next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (position >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    final int value = items[position];
+                    position = advance(position + 1);
+                    return value;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек в наносекундах в духе HdrHistogram: каждая степень двойки делится на SUB_BUCKETS
+ * равных корзин, поэтому относительная ошибка не больше 1/SUB_BUCKETS на всем диапазоне long.
+ * Запись — несколько атомарных инкрементов без выделения памяти, писать можно из любых потоков.
+ * Общие для всех записей число, сумма и максимум разложены по ячейкам LongAdder и LongAccumulator,
+ * поэтому параллельные писатели не спорят за одну переменную; корзины и так делятся по значениям.
+ * Чтение идет через {@link #snapshot()}, который копирует счетчики.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Отрицательные значения (например, если часы пошли назад) считаются нулем.
+     */
+    public void record(long value) {
+        final long nanos = Math.max(0, value);
+        counts.incrementAndGet(indexOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Наибольшее значение, которое попадает в корзину index.
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        final long next = (subBucket + 1) << shift;
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    /**
+     * Неизменяемая копия гистограммы. Счетчики копируются без общей блокировки, поэтому во время записи
+     * число значений в копии может не совпасть с суммой на несколько последних записей.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Значение, не меньше которого percentile процентов записей (с точностью до корзины).
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Перцентиль должен быть от 0 до 100, получено: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
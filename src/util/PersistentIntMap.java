@@ -0,0 +1,239 @@
+package util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Неизменяемое отображение int -> значение: префиксное дерево по 5 бит ключа, начиная со старших.
+ * put и remove возвращают новое отображение и копируют только путь от корня до ключа (не больше 7 узлов),
+ * остальные узлы общие со старой версией. Поэтому старые версии можно читать из любых потоков без блокировок.
+ * Обход идет по возрастанию неотрицательных ключей. Значения null не допускаются.
+ */
+public final class PersistentIntMap<V> implements Iterable<V> {
+    private static final int BITS = 5;
+    private static final int TOP_SHIFT = 30;
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = TOP_SHIFT; ; shift -= BITS) {
+            final int bit = bit(key, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            final Object child = node.children[node.position(bit)];
+            if (child instanceof Leaf leaf) {
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) child;
+        }
+    }
+
+    public PersistentIntMap<V> put(int key, V value) {
+        Objects.requireNonNull(value, "Значение не может быть null.");
+        final boolean added = !containsKey(key);
+        final Node newRoot = put(root, TOP_SHIFT, new Leaf(key, value));
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot, added ? size + 1 : size);
+    }
+
+    public PersistentIntMap<V> remove(int key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        final Object newRoot = remove(root, TOP_SHIFT, key);
+        if (newRoot == null) {
+            return empty();
+        }
+        return new PersistentIntMap<>((Node) newRoot, size - 1);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator<>(root);
+    }
+
+    private static Node put(Node node, int shift, Leaf leaf) {
+        final int bit = bit(leaf.key, shift);
+        final int position = node.position(bit);
+        if ((node.bitmap & bit) == 0) {
+            return node.insert(position, bit, leaf);
+        }
+        final Object child = node.children[position];
+        if (child instanceof Leaf existing) {
+            if (existing.key != leaf.key) {
+                return node.replace(position, split(existing, leaf, shift - BITS));
+            }
+            return existing.value == leaf.value ? node : node.replace(position, leaf);
+        }
+        final Node newChild = put((Node) child, shift - BITS, leaf);
+        return newChild == child ? node : node.replace(position, newChild);
+    }
+
+    /**
+     * Узел для двух листьев, которые на предыдущем уровне попали в одну ячейку.
+     */
+    private static Node split(Leaf first, Leaf second, int shift) {
+        final int firstBit = bit(first.key, shift);
+        final int secondBit = bit(second.key, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[]{split(first, second, shift - BITS)});
+        }
+        final Object[] children = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[]{first, second}
+                : new Object[]{second, first};
+        return new Node(firstBit | secondBit, children);
+    }
+
+    /**
+     * Возвращает новый узел, null, если узел опустел, или единственный оставшийся лист,
+     * чтобы родитель положил его прямо в свою ячейку. Корень всегда остается узлом.
+     */
+    private static Object remove(Node node, int shift, int key) {
+        final int bit = bit(key, shift);
+        final int position = node.position(bit);
+        final Object child = node.children[position];
+        final Object newChild = child instanceof Leaf ? null : remove((Node) child, shift - BITS, key);
+        if (newChild != null) {
+            if (newChild instanceof Leaf && node.children.length == 1 && shift != TOP_SHIFT) {
+                return newChild;
+            }
+            return node.replace(position, newChild);
+        }
+        if (node.children.length == 1) {
+            return null;
+        }
+        final Object sibling = node.children[position == 0 ? 1 : 0];
+        if (node.children.length == 2 && sibling instanceof Leaf && shift != TOP_SHIFT) {
+            return sibling;
+        }
+        return node.without(position, bit);
+    }
+
+    private static int bit(int key, int shift) {
+        return 1 << ((key >>> shift) & 31);
+    }
+
+    private static final class Leaf {
+        private final int key;
+        private final Object value;
+
+        private Leaf(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Занятые ячейки отмечены битами в bitmap, в массиве лежат только они: лист или узел следующего уровня.
+     */
+    private static final class Node {
+        private static final Node EMPTY = new Node(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] children;
+
+        private Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        private int position(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Node insert(int position, int bit, Object child) {
+            final Object[] copy = new Object[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, position);
+            copy[position] = child;
+            System.arraycopy(children, position, copy, position + 1, children.length - position);
+            return new Node(bitmap | bit, copy);
+        }
+
+        private Node replace(int position, Object child) {
+            final Object[] copy = children.clone();
+            copy[position] = child;
+            return new Node(bitmap, copy);
+        }
+
+        private Node without(int position, int bit) {
+            final Object[] copy = new Object[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, position);
+            System.arraycopy(children, position + 1, copy, position, copy.length - position);
+            return new Node(bitmap & ~bit, copy);
+        }
+    }
+
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Node[] nodes = new Node[TOP_SHIFT / BITS + 1];
+        private final int[] positions = new int[nodes.length];
+        private int depth;
+        private Leaf next;
+
+        private ValueIterator(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                final Node node = nodes[depth];
+                if (positions[depth] == node.children.length) {
+                    depth--;
+                    continue;
+                }
+                final Object child = node.children[positions[depth]++];
+                if (child instanceof Leaf leaf) {
+                    next = leaf;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) child;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final V value = (V) next.value;
+            advance();
+            return value;
+        }
+    }
+}
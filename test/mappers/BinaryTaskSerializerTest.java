@@ -0,0 +1,102 @@
+package mappers;
+
+import exceptions.LoadingFromFileException;
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+import org.junit.jupiter.api.Test;
+import storage.JournalOperation;
+import storage.JournalRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryTaskSerializerTest {
+    private final TaskSerializer serializer = new BinaryTaskSerializer();
+
+    private ByteBuffer encode(JournalRecord... records) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(serializer.getHeader());
+        for (JournalRecord record : records) {
+            serializer.write(record, out);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Test
+    public void recordsShouldSurviveRoundTrip() throws IOException {
+        final Task task = new Task(1, "Забрать подарок, срочно", "ПВ Юбилейный, к оплате 2600 руб", TaskStatus.DONE);
+        final EpicTask epic = new EpicTask(300, "Epic 😀", null, TaskStatus.IN_PROGRESS);
+        final Subtask subtask = new Subtask(70_000, "Отформатировать", "Roboto 18 bold", TaskStatus.NEW, 300);
+
+        final ByteBuffer buffer = encode(JournalRecord.put(task), JournalRecord.put(epic), JournalRecord.put(subtask),
+                JournalRecord.delete(70_000), JournalRecord.clear(TaskType.EPIC));
+        final TaskSerializer detected = TaskSerializer.detect(buffer);
+
+        assertEquals(BinaryTaskSerializer.class, detected.getClass(), "Формат файла не распознан.");
+        assertEquals(task, detected.read(buffer).getTask(), "Задача исказилась при кодировании.");
+        assertEquals(epic, detected.read(buffer).getTask(), "Эпик исказился при кодировании.");
+        final Subtask decodedSubtask = (Subtask) detected.read(buffer).getTask();
+        assertEquals(subtask, decodedSubtask, "Подзадача исказилась при кодировании.");
+        assertEquals(300, decodedSubtask.getEpicId(), "Id эпика подзадачи исказился при кодировании.");
+        final JournalRecord delete = detected.read(buffer);
+        assertEquals(JournalOperation.DELETE, delete.getOperation());
+        assertEquals(70_000, delete.getId());
+        assertEquals(TaskType.EPIC, detected.read(buffer).getType());
+        assertTrue(!buffer.hasRemaining() && detected.read(buffer) == null, "После последней записи остались данные.");
+    }
+
+    @Test
+    public void emptyDescriptionsShouldSurviveRoundTrip() throws IOException {
+        final Task task = new Task(1, "Title", "", TaskStatus.NEW);
+        final EpicTask epic = new EpicTask(2, "", "", TaskStatus.NEW);
+
+        final ByteBuffer buffer = encode(JournalRecord.put(task), JournalRecord.put(epic));
+        TaskSerializer.detect(buffer);
+
+        assertEquals(task, serializer.read(buffer).getTask(), "Пустое описание задачи исказилось.");
+        assertEquals(epic, serializer.read(buffer).getTask(), "Пустые поля эпика исказились.");
+    }
+
+    @Test
+    public void recordWithValidChecksumThatDoesNotParseShouldBeReportedAsCorruption() throws IOException {
+        final ByteBuffer buffer = encode(JournalRecord.put(new Task(1, "Title", "Description", TaskStatus.NEW)));
+        TaskSerializer.detect(buffer);
+        final byte[] bytes = buffer.array();
+        final int payloadStart = buffer.position() + 1;
+        final int payloadLength = bytes.length - Integer.BYTES - payloadStart;
+        bytes[payloadStart + 3] = 100;
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, payloadStart, payloadLength);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - Integer.BYTES, (int) crc.getValue());
+
+        final int position = buffer.position();
+        assertThrows(LoadingFromFileException.class, () -> serializer.read(buffer),
+                "Целая запись с неизвестным статусом не должна считаться оборванной.");
+        assertEquals(position, buffer.position(), "Позиция сдвинулась после неразбираемой записи.");
+    }
+
+    @Test
+    public void truncatedOrCorruptedRecordShouldNotBeRead() throws IOException {
+        final ByteBuffer buffer = encode(JournalRecord.put(new Task(1, "Title", "Description", TaskStatus.NEW)));
+        final byte[] bytes = buffer.array();
+        TaskSerializer.detect(buffer);
+
+        final ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1));
+        truncated.position(buffer.position());
+        assertNull(serializer.read(truncated), "Оборванная запись прочитана.");
+
+        bytes[bytes.length - 6] ^= 1;
+        assertNull(serializer.read(buffer), "Запись с неверной контрольной суммой прочитана.");
+    }
+}
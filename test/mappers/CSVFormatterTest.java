@@ -0,0 +1,62 @@
+package mappers;
+
+import exceptions.LoadingFromFileException;
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import storage.JournalRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CSVFormatterTest {
+
+    @Test
+    public void fieldsWithSeparatorsShouldSurviveRoundTrip() {
+        final Task task = new Task(1, "Купить, \"срочно\"\nи оплатить", "C:\\temp\\new,\r\nпапка\\", TaskStatus.DONE);
+        final Subtask subtask = new Subtask(2, "a,b", "", TaskStatus.NEW, 1);
+
+        final String line = CSVFormatter.taskToString(task);
+        assertFalse(line.contains("\n") || line.contains("\r"), "Перевод строки не экранирован.");
+
+        assertEquals(task, CSVFormatter.stringToTask(line), "Задача исказилась при экранировании.");
+        final Subtask decoded = (Subtask) CSVFormatter.stringToTask(CSVFormatter.taskToString(subtask));
+        assertEquals(subtask, decoded, "Подзадача исказилась при экранировании.");
+        assertEquals(1, decoded.getEpicId(), "Id эпика подзадачи исказился при экранировании.");
+    }
+
+    @Test
+    public void emptyDescriptionsShouldSurviveRoundTrip() throws IOException {
+        final Task task = new Task(1, "Title", "", TaskStatus.NEW);
+        final EpicTask epic = new EpicTask(2, "", "", TaskStatus.NEW);
+        final TaskSerializer serializer = new CSVTaskSerializer();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(serializer.getHeader());
+        serializer.write(JournalRecord.put(task), out);
+        serializer.write(JournalRecord.put(epic), out);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        final TaskSerializer detected = TaskSerializer.detect(buffer);
+        assertEquals(task, detected.read(buffer).getTask(), "Пустое описание задачи исказилось.");
+        assertEquals(epic, detected.read(buffer).getTask(), "Пустые поля эпика исказились.");
+        assertEquals(task, CSVFormatter.stringToTask("1,TASK,Title,NEW,,"));
+    }
+
+    @Test
+    public void recordWithValidChecksumThatDoesNotParseShouldBeReportedAsCorruption() {
+        final String line = CSVFormatter.appendChecksum("4,TASK,Title,UNKNOWN,Desc,") + "\n";
+        final ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(LoadingFromFileException.class, () -> new CSVTaskSerializer().read(buffer),
+                "Целая запись с неизвестным статусом не должна считаться оборванной.");
+        assertEquals(0, buffer.position(), "Позиция сдвинулась после неразбираемой записи.");
+    }
+}
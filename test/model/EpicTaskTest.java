@@ -3,8 +3,12 @@ package model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
@@ -74,4 +78,39 @@ public class EpicTaskTest {
         assertFalse(epic.getSubtasks().isEmpty());
     }
 
+    @Test
+    public void statusIsDerivedFromSubtaskCounters() {
+        epic.addSubtask(3, TaskStatus.NEW);
+        epic.addSubtask(4, TaskStatus.DONE);
+        assertEquals(TaskStatus.IN_PROGRESS, epic.calculateStatus());
+
+        epic.updateSubtaskStatus(3, TaskStatus.DONE);
+        assertEquals(TaskStatus.DONE, epic.calculateStatus());
+
+        epic.removeLinkedSubtask(4);
+        epic.removeLinkedSubtask(3);
+        assertEquals(TaskStatus.NEW, epic.calculateStatus());
+        assertFalse(epic.updateSubtaskStatus(3, TaskStatus.DONE), "Отвязанная подзадача не должна учитываться.");
+    }
+
+    @Test
+    public void frozenViewShouldKeepLinksOfItsMoment() {
+        epic.addSubtask(3, TaskStatus.DONE);
+        epic.addSubtask(5, TaskStatus.NEW);
+        final EpicTask view = epic.frozenView();
+
+        epic.removeLinkedSubtask(3);
+        epic.addSubtask(7, TaskStatus.NEW);
+        epic.updateSubtaskStatus(5, TaskStatus.DONE);
+
+        assertEquals(List.of(3, 5), view.getSubtasks(), "Вид увидел смену привязок после публикации.");
+        assertArrayEquals(new int[]{5}, view.getSubtaskIdsAfter(3, 10));
+        assertEquals(1, view.getSubtaskCount(TaskStatus.DONE));
+        assertEquals(TaskStatus.IN_PROGRESS, view.calculateStatus());
+        assertEquals(List.of(5, 7), epic.frozenView().getSubtasks());
+        assertThrows(UnsupportedOperationException.class, () -> view.addSubtask(9));
+        assertThrows(UnsupportedOperationException.class, () -> view.setTitle("Changed"));
+        assertTrue(view.copy().getSubtasks().isEmpty(), "Копия вида должна быть обычным эпиком без привязок.");
+    }
+
 }
@@ -0,0 +1,111 @@
+package service;
+
+import model.Task;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentHistoryManagerTest {
+    private static final int THREADS = 4;
+
+    private static Task task(int id) {
+        Task task = new Task("Title" + id, "Desc" + id);
+        task.setId(id);
+        return task;
+    }
+
+    @Test
+    public void latestViewShouldWinAfterDrain() {
+        HistoryManager history = new ConcurrentHistoryManager(new InMemoryHistoryManager(), Runnable::run);
+        history.add(task(1));
+        history.add(task(2));
+        history.add(task(1));
+
+        assertEquals(List.of(task(2), task(1)), history.getHistory());
+        history.remove(1);
+        assertEquals(List.of(task(2)), history.getHistory(5));
+    }
+
+    @Test
+    public void viewsShouldBeDrainedInBackgroundOnceThresholdReached() {
+        List<Runnable> drains = new ArrayList<>();
+        InMemoryHistoryManager ordered = new InMemoryHistoryManager();
+        HistoryManager history = new ConcurrentHistoryManager(ordered, drains::add);
+        for (int id = 1; id <= 100; id++) {
+            history.add(task(id));
+        }
+
+        assertTrue(ordered.getHistory().isEmpty(), "Просмотры должны копиться в буферах до слияния.");
+        assertEquals(1, drains.size(), "Слияние должно планироваться один раз, пока не началось.");
+        drains.getFirst().run();
+        assertEquals(100, ordered.getHistory().size());
+    }
+
+    @Test
+    public void viewsOfDifferentThreadsShouldKeepHappensBeforeOrder() throws Exception {
+        HistoryManager history = new ConcurrentHistoryManager(new InMemoryHistoryManager(), Runnable::run);
+        for (int id = 1; id <= 3; id++) {
+            final Task view = task(id);
+            Thread thread = new Thread(() -> history.add(view));
+            thread.start();
+            thread.join();
+        }
+
+        assertEquals(List.of(task(1), task(2), task(3)), history.getHistory(),
+                "Просмотры из разных потоков перемешались при слиянии.");
+    }
+
+    @Test
+    public void viewOfRemovedTaskShouldBeDroppedOnDrain() {
+        Set<Integer> stored = new HashSet<>(List.of(1, 2));
+        HistoryManager history = new ConcurrentHistoryManager(new InMemoryHistoryManager(), Runnable::run,
+                view -> stored.contains(view.getId()));
+        history.add(task(2));
+        stored.remove(1);
+        history.remove(1);
+        history.add(task(1));
+
+        assertEquals(List.of(task(2)), history.getHistory(), "Просмотр удаленной задачи вернул ее в историю.");
+    }
+
+    @Test
+    public void parallelViewsShouldAllReachHistory() throws Exception {
+        HistoryManager history = new ConcurrentHistoryManager(new InMemoryHistoryManager(10_000));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * 1000;
+            futures.add(executor.submit(() -> {
+                for (int i = 1; i <= 1000; i++) {
+                    history.add(task(offset + i));
+                    history.add(task(offset + 1));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Task> views = history.getHistory();
+        assertEquals(THREADS * 1000, views.size(), "Часть просмотров потерялась.");
+        for (int t = 0; t < THREADS; t++) {
+            int previous = -1;
+            for (int i = 2; i <= 1000; i++) {
+                int position = views.indexOf(task(t * 1000 + i));
+                assertTrue(position > previous, "Нарушен порядок просмотров одного потока.");
+                previous = position;
+            }
+            assertTrue(views.indexOf(task(t * 1000 + 1)) > previous, "Последний просмотр задачи должен победить.");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package service;
+
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest {
+    private static final int THREADS = 4;
+
+    @Override
+    protected TaskManager createManager() {
+        return new ConcurrentTaskManager();
+    }
+
+    @Test
+    public void parallelWritersShouldKeepEpicsConsistent() throws Exception {
+        final int subtasksPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < subtasksPerThread; i++) {
+                    final Subtask subtask = new Subtask("Sub", "Desc", epic.getId());
+                    manager.createSubtask(subtask);
+                    final Subtask done = new Subtask(subtask.getId(), "Sub", "Desc", TaskStatus.DONE, epic.getId());
+                    manager.updateSubtask(done);
+                    manager.getEpicTask(epic.getId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(THREADS * subtasksPerThread + 1, manager.getSubtasksOfEpic(epic.getId()).size(),
+                "Часть подзадач потерялась при параллельном создании.");
+        assertEquals(THREADS * subtasksPerThread + 1, manager.getAllSubtasks().size());
+        assertEquals(TaskStatus.IN_PROGRESS, manager.getEpicTask(epic.getId()).getStatus(),
+                "Статус эпика не соответствует подзадачам.");
+
+        manager.updateSubtask(subWithStatusDone);
+
+        assertEquals(TaskStatus.DONE, manager.getEpicTask(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void parallelCreatesShouldGenerateUniqueIds() throws Exception {
+        final int tasksPerThread = 1000;
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < tasksPerThread; i++) {
+                    manager.createTask(new Task("Task", "Desc"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * tasksPerThread + 1, manager.getAllTasks().size(), "Выданы повторяющиеся id.");
+        assertEquals(THREADS * tasksPerThread + 3, manager.getId());
+    }
+
+    @Test
+    public void parallelWritersShouldKeepSearchAndPagesComplete() throws Exception {
+        final int tasksPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final String word = "поток" + t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < tasksPerThread; i++) {
+                    manager.createTask(new Task(word + " задача" + i, "общее описание"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(tasksPerThread, manager.search("поток" + t, Integer.MAX_VALUE).size(),
+                    "Поиск потерял задачи потока " + t + ".");
+        }
+        assertEquals(THREADS * tasksPerThread, manager.search("общее описание", Integer.MAX_VALUE).size());
+        int previousId = Page.FIRST_CURSOR;
+        int walked = 0;
+        Page<Task> page = manager.getTasks(Page.FIRST_CURSOR, 64);
+        while (true) {
+            for (Task found : page.getItems()) {
+                assertTrue(found.getId() > previousId, "Страницы должны идти по возрастанию id.");
+                previousId = found.getId();
+                walked++;
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = manager.getTasks(page.getNextCursor(), 64);
+        }
+        assertEquals(manager.getAllTasks().size(), walked, "Обход страницами потерял задачи.");
+    }
+
+    @Test
+    public void createsShouldNotInterleaveWithDeleteAll() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final boolean deleter = t == 0;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (deleter && i % 50 == 0) {
+                        manager.deleteAllTasks();
+                        manager.deleteAllEpicTasks();
+                    } else {
+                        manager.createTask(new Task("Task", "Desc"));
+                        manager.createEpicTask(new EpicTask("Epic", "Desc"));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(manager.getAllTasks().size(), manager.countByStatus(TaskType.TASK, TaskStatus.NEW),
+                "Индекс статусов разошелся с хранилищем задач.");
+        assertEquals(manager.getAllEpicTasks().size(), manager.countByStatus(TaskType.EPIC, TaskStatus.NEW),
+                "Индекс статусов разошелся с хранилищем эпиков.");
+        assertEquals(manager.getAllTasks().size() + manager.getAllEpicTasks().size(),
+                manager.search("desc", Integer.MAX_VALUE).size(), "Поисковый индекс разошелся с хранилищами.");
+    }
+
+    @Test
+    public void snapshotShouldStayConsistentWhileWritersRun() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    final EpicTask epicTask = new EpicTask("Epic", "Desc");
+                    manager.createEpicTask(epicTask);
+                    final Subtask subtask = new Subtask("Sub", "Desc", epicTask.getId());
+                    manager.createSubtask(subtask);
+                    manager.createSubtask(new Subtask("Sub", "Desc", epicTask.getId()));
+                    manager.updateSubtask(new Subtask(subtask.getId(), "Sub", "Desc", TaskStatus.DONE,
+                            epicTask.getId()));
+                    if (i % 2 == 0) {
+                        manager.deleteEpicTask(epicTask.getId());
+                    } else if (i % 3 == 0) {
+                        manager.deleteSubtask(subtask.getId());
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < 50; i++) {
+            final TaskSnapshot snapshot = manager.snapshot();
+            final List<Subtask> subtasks = snapshot.getAllSubtasks();
+            int linked = 0;
+            for (EpicTask epicTask : snapshot.getAllEpicTasks()) {
+                final List<Subtask> subtasksOfEpic = snapshot.getSubtasksOfEpic(epicTask.getId());
+                linked += subtasksOfEpic.size();
+                assertEquals(expectedStatus(subtasksOfEpic), epicTask.getStatus(),
+                        "Статус эпика в снимке не сходится со статусами его подзадач.");
+            }
+            assertEquals(subtasks.size(), linked, "Подзадачи снимка не сходятся со связями эпиков.");
+            for (Subtask subtask : subtasks) {
+                assertNotNull(snapshot.getEpicTask(subtask.getEpicId()), "В снимке подзадача без эпика.");
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(manager.getAllSubtasks().size(), manager.snapshot().getAllSubtasks().size());
+    }
+
+    private static TaskStatus expectedStatus(List<Subtask> subtasks) {
+        if (subtasks.stream().allMatch(subtask -> subtask.getStatus() == TaskStatus.NEW)) {
+            return TaskStatus.NEW;
+        }
+        if (subtasks.stream().allMatch(subtask -> subtask.getStatus() == TaskStatus.DONE)) {
+            return TaskStatus.DONE;
+        }
+        return TaskStatus.IN_PROGRESS;
+    }
+}
@@ -1,19 +1,39 @@
 package service;
 
 import exceptions.LoadingFromFileException;
+import exceptions.SavingToFileException;
+import mappers.BinaryTaskSerializer;
+import mappers.CSVFormatter;
+import mappers.CSVTaskSerializer;
 import model.EpicTask;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import storage.Durability;
+import storage.HistoryLog;
+import storage.JournalRecord;
+import storage.SnapshotCompactor;
+import storage.TaskJournal;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FileBackedTaskManagerTest extends TaskManagerTest {
     private Path backupFile;
@@ -36,6 +56,9 @@ public class FileBackedTaskManagerTest extends TaskManagerTest {
             throw new RuntimeException("Ошибка при создании временного файла backupFileTest.", e);
         }
         backupFile.toFile().deleteOnExit();
+        TaskJournal.journalFileFor(backupFile.toFile()).deleteOnExit();
+        SnapshotCompactor.retiredJournalFileFor(TaskJournal.journalFileFor(backupFile.toFile())).deleteOnExit();
+        HistoryLog.historyFileFor(backupFile.toFile()).deleteOnExit();
 
         manager = new FileBackedTaskManager(backupFile.toFile());
 
@@ -97,4 +120,390 @@ public class FileBackedTaskManagerTest extends TaskManagerTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void newManagerOnExistingBoardShouldStartFresh() {
+        manager.getTask(task.getId());
+        ((FileBackedTaskManager) manager).close();
+
+        FileBackedTaskManager freshManager = new FileBackedTaskManager(backupFile.toFile());
+        Task freshTask = new Task("FreshTask", "Desc");
+        freshManager.createTask(freshTask);
+        freshManager.createTask(new Task("FreshTask_2", "Desc"));
+        freshManager.close();
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertEquals(2, newManager.getAllTasks().size(), "Прежние задачи остались на новой доске.");
+        assertTrue(newManager.getAllEpicTasks().isEmpty(), "Прежний эпик делит id с новой задачей.");
+        assertTrue(newManager.getAllSubtasks().isEmpty());
+        assertTrue(newManager.getHistory().isEmpty(), "Прежняя история осталась на новой доске.");
+        assertEquals(freshTask, newManager.getTask(freshTask.getId()));
+    }
+
+    @Test
+    public void eachMutationAppendsOneRecordToJournal() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        final long snapshotSize = Files.size(backupFile);
+        final int journalSize = Files.readAllLines(journalFile).size();
+
+        manager.updateSubtask(subWithStatusDone);
+        manager.deleteTask(task.getId());
+
+        assertEquals(journalSize + 2, Files.readAllLines(journalFile).size(),
+                "Каждая мутация должна добавлять в журнал ровно одну запись.");
+        assertEquals(snapshotSize, Files.size(backupFile), "Снимок не должен перезаписываться при мутациях.");
+    }
+
+    @Test
+    public void applyBatchShouldAppendWholeBatchToJournalAtOnce() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        final int journalSize = Files.readAllLines(journalFile).size();
+        final List<Mutation> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(Mutation.createSubtask(new Subtask("Imported_" + i, "Desc", epic.getId())));
+        }
+
+        manager.applyBatch(batch);
+
+        assertEquals(journalSize + 100, Files.readAllLines(journalFile).size());
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertEquals(101, newManager.getSubtasksOfEpic(epic.getId()).size(), "Пакет не восстановился из журнала.");
+    }
+
+    @Test
+    public void applyBatchShouldRollBackMemoryWhenJournalFails() {
+        ((FileBackedTaskManager) manager).save();
+        final FileBackedTaskManager failingManager = FileBackedTaskManager.loadFromFile(backupFile.toFile(),
+                Durability.sync(), new CSVTaskSerializer() {
+                    @Override
+                    public void write(JournalRecord record, OutputStream out) throws IOException {
+                        if (record.getTask() != null && "Broken".equals(record.getTask().getTitle())) {
+                            throw new IOException("Нет места на диске.");
+                        }
+                        super.write(record, out);
+                    }
+                });
+        final List<Mutation> batch = List.of(
+                Mutation.createTask(new Task("Imported", "Desc")),
+                Mutation.updateTask(new Task(task.getId(), "Changed", "Desc", TaskStatus.DONE)),
+                Mutation.createTask(new Task("Broken", "Desc")));
+
+        assertThrows(SavingToFileException.class, () -> failingManager.applyBatch(batch));
+        assertEquals(1, failingManager.getAllTasks().size(), "Пакет остался в памяти после сбоя журнала.");
+        assertEquals("TaskTitle_1", failingManager.getTask(task.getId()).getTitle());
+        assertEquals(1, failingManager.snapshot().getAllTasks().size(), "Снимок видит несохраненный пакет.");
+
+        failingManager.createTask(new Task("After", "Desc"));
+        final TaskManager reloaded = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertEquals(2, reloaded.getAllTasks().size(), "Часть сорвавшегося пакета попала в журнал.");
+        assertEquals("TaskTitle_1", reloaded.getTask(task.getId()).getTitle());
+        failingManager.close();
+    }
+
+    @Test
+    public void transactionShouldReachJournalOnlyOnCommit() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        final int journalSize = Files.readAllLines(journalFile).size();
+
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.deleteTask(task.getId());
+            manager.updateSubtask(subWithStatusDone);
+            assertTrue(transaction.isActive());
+        }
+        assertEquals(journalSize, Files.readAllLines(journalFile).size(), "Откаченная транзакция попала в журнал.");
+
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.deleteTask(task.getId());
+            manager.updateSubtask(subWithStatusDone);
+            assertEquals(journalSize, Files.readAllLines(journalFile).size(), "Записи ушли в журнал до commit().");
+            transaction.commit();
+        }
+        assertEquals(journalSize + 2, Files.readAllLines(journalFile).size());
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertNull(newManager.getTask(task.getId()));
+        assertEquals(TaskStatus.DONE, newManager.getEpicTask(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void historyShouldBeRestoredAfterLoad() {
+        manager.getTask(task.getId());
+        manager.getSubtask(sub.getId());
+        manager.getEpicTask(epic.getId());
+        manager.getTask(task.getId());
+        manager.deleteSubtask(sub.getId());
+        ((FileBackedTaskManager) manager).flush();
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(manager.getHistory(), newManager.getHistory(), "История не восстановилась из файла.");
+        assertEquals(List.of(epic.getId(), task.getId()), newManager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void deleteAllShouldWriteSingleHistoryRecord() throws IOException {
+        manager.getTask(task.getId());
+        manager.getSubtask(sub.getId());
+        manager.getEpicTask(epic.getId());
+        manager.deleteAllSubtasks();
+        manager.deleteAllTasks();
+        ((FileBackedTaskManager) manager).close();
+
+        final List<JournalRecord> records = new ArrayList<>();
+        final HistoryLog log = new HistoryLog(HistoryLog.historyFileFor(backupFile.toFile()), Durability.sync(),
+                new CSVTaskSerializer());
+        log.replay(records::add);
+        log.close();
+        assertEquals(List.of(TaskType.SUBTASK, TaskType.TASK), records.stream().skip(3).map(JournalRecord::getType)
+                .toList(), "Удаление всех задач типа должно дописывать в историю одну запись.");
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertEquals(List.of(epic.getId()), newManager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void historyFileShouldStayBoundedByHistoryCapacity() {
+        for (int i = 0; i < 20_000; i++) {
+            manager.getTask(task.getId());
+            manager.getEpicTask(epic.getId());
+        }
+        ((FileBackedTaskManager) manager).flush();
+
+        assertTrue(HistoryLog.historyFileFor(backupFile.toFile()).length() < 200_000,
+                "Файл истории должен переписываться, а не расти с каждым просмотром.");
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertEquals(List.of(task.getId(), epic.getId()), newManager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void loadFromFileShouldReplaySnapshotAndJournal() {
+        ((FileBackedTaskManager) manager).save();
+
+        manager.updateSubtask(subWithStatusDone);
+        manager.deleteTask(task.getId());
+        EpicTask epic4 = new EpicTask("EpicTitle_4", "EpicDesc_4");
+        manager.createEpicTask(epic4);
+        manager.createSubtask(new Subtask("SubTitle_5", "SubDesc_5", epic4.getId()));
+        manager.deleteEpicTask(epic4.getId());
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertNull(newManager.getTask(task.getId()), "Удаленная задача восстановилась из журнала.");
+        assertEquals(List.of(epic), newManager.getAllEpicTasks(), "Эпики после восстановления не совпадают.");
+        assertEquals(List.of(subWithStatusDone), newManager.getAllSubtasks(),
+                "Подзадачи после восстановления не совпадают.");
+        assertEquals(TaskStatus.DONE, newManager.getEpicTask(epic.getId()).getStatus(),
+                "Статус эпика не пересчитан после восстановления.");
+        assertEquals(manager.getId(), newManager.getId(), "Счетчик id не восстановлен.");
+        assertEquals(List.of(subWithStatusDone), newManager.getByStatus(TaskType.SUBTASK, TaskStatus.DONE),
+                "Индекс по статусу не восстановлен после загрузки.");
+        assertEquals(0, newManager.countByStatus(TaskType.TASK, TaskStatus.NEW));
+    }
+
+    @Test
+    public void compactionShouldRollJournalIntoSnapshot() {
+        final FileBackedTaskManager fileManager = (FileBackedTaskManager) manager;
+        final File journalFile = TaskJournal.journalFileFor(backupFile.toFile());
+        fileManager.setCompactionThreshold(256);
+
+        for (int i = 0; i < 50; i++) {
+            manager.createSubtask(new Subtask("SubTitle_" + i, "SubDesc_" + i, epic.getId()));
+        }
+        fileManager.awaitCompaction();
+
+        assertFalse(SnapshotCompactor.retiredJournalFileFor(journalFile).exists(),
+                "Отработанный журнал не удален после компакции.");
+        assertTrue(backupFile.toFile().length() > 0, "Снимок не был записан фоновой компакцией.");
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+        assertEquals(manager.getAllSubtasks().size(), newManager.getAllSubtasks().size(),
+                "Количество подзадач после компакции не совпадает.");
+        assertEquals(manager.getSubtasksOfEpic(epic.getId()).size(),
+                newManager.getSubtasksOfEpic(epic.getId()).size(), "Связи эпика после компакции не совпадают.");
+    }
+
+    @Test
+    public void asyncModeShouldPersistOnlyAfterFlush() {
+        final File journalFile = TaskJournal.journalFileFor(backupFile.toFile());
+        ((FileBackedTaskManager) manager).save();
+        final FileBackedTaskManager asyncManager =
+                FileBackedTaskManager.loadFromFile(backupFile.toFile(), Durability.async());
+
+        asyncManager.createTask(new Task("TaskTitle_4", "TaskDesc_4"));
+        assertEquals(0, journalFile.length(), "В режиме async запись ушла на диск до flush().");
+
+        asyncManager.flush();
+        assertEquals(2, FileBackedTaskManager.loadFromFile(backupFile.toFile()).getAllTasks().size(),
+                "После flush() задача должна восстанавливаться из журнала.");
+        asyncManager.close();
+    }
+
+    @Test
+    public void groupCommitShouldFlushWhenGroupIsFull() {
+        ((FileBackedTaskManager) manager).save();
+        final FileBackedTaskManager groupManager =
+                FileBackedTaskManager.loadFromFile(backupFile.toFile(), Durability.groupCommit(60_000, 2));
+
+        groupManager.createTask(new Task("TaskTitle_4", "TaskDesc_4"));
+        assertEquals(1, FileBackedTaskManager.loadFromFile(backupFile.toFile()).getAllTasks().size(),
+                "Неполная группа не должна сбрасываться до истечения интервала.");
+
+        groupManager.createTask(new Task("TaskTitle_5", "TaskDesc_5"));
+        assertEquals(3, FileBackedTaskManager.loadFromFile(backupFile.toFile()).getAllTasks().size(),
+                "Полная группа должна сбрасываться на диск.");
+        groupManager.close();
+    }
+
+    @Test
+    public void loadFromFileShouldSkipTornJournalTail() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        final long validLength = Files.size(journalFile);
+        Files.writeString(journalFile, "4,TASK,TornTitle,NE", StandardOpenOption.APPEND);
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(manager.getAllTasks(), newManager.getAllTasks(), "Оборванная запись не должна загружаться.");
+        assertEquals(manager.getAllSubtasks(), newManager.getAllSubtasks(),
+                "Целые записи до оборванного хвоста должны загрузиться.");
+        assertEquals(validLength, Files.size(journalFile), "Оборванный хвост журнала не отрезан.");
+
+        newManager.createTask(new Task("TaskTitle_5", "TaskDesc_5"));
+        assertEquals(2, FileBackedTaskManager.loadFromFile(backupFile.toFile()).getAllTasks().size(),
+                "Запись после отрезанного хвоста должна читаться.");
+    }
+
+    @Test
+    public void loadFromFileShouldNotTruncateUnparsableRecordAtJournalEnd() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        Files.writeString(journalFile, CSVFormatter.appendChecksum("4,TASK,Title,UNKNOWN,Desc,") + "\n",
+                StandardOpenOption.APPEND);
+        final long length = Files.size(journalFile);
+
+        assertThrows(LoadingFromFileException.class, () -> FileBackedTaskManager.loadFromFile(backupFile.toFile()),
+                "Целая, но неразбираемая запись должна считаться повреждением, а не оборванным хвостом.");
+        assertEquals(length, Files.size(journalFile), "Неразбираемая запись отрезана из журнала.");
+    }
+
+    @Test
+    public void emptyDescriptionsShouldSurviveReload() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        final Task emptyTask = new Task("EmptyTask", "");
+        manager.createTask(emptyTask);
+        manager.createEpicTask(new EpicTask("EmptyEpic", ""));
+        final long length = Files.size(journalFile);
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(emptyTask, newManager.getTask(emptyTask.getId()), "Задача с пустым описанием потерялась.");
+        assertEquals(2, newManager.getAllEpicTasks().size(), "Эпик с пустым описанием потерялся.");
+        assertEquals(length, Files.size(journalFile), "Журнал с целыми записями обрезан.");
+    }
+
+    @Test
+    public void loadFromFileShouldStopAtRecordWithBrokenChecksum() throws IOException {
+        ((FileBackedTaskManager) manager).save();
+        final String snapshot = Files.readString(backupFile);
+        Files.writeString(backupFile, snapshot.replace("SubtaskTitle_3", "SubtaskTitle_X"));
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(1, newManager.getAllTasks().size(), "Записи до поврежденной должны загрузиться.");
+        assertTrue(newManager.getAllSubtasks().isEmpty(), "Запись с неверной контрольной суммой загружена.");
+    }
+
+    @Test
+    public void loadFromFileShouldKeepTitlesWithLineBreaksAndCommas() {
+        final Task multiline = new Task("Первая строка\nвторая строка", "Описание, с запятой\r\n");
+        manager.createTask(multiline);
+        manager.createTask(new Task("TaskTitle_5", "TaskDesc_5"));
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(manager.getAllTasks(), newManager.getAllTasks(), "Задачи после загрузки не совпадают.");
+        assertEquals(multiline, newManager.getTask(multiline.getId()), "Заголовок с переводом строки исказился.");
+        ((FileBackedTaskManager) newManager).save();
+        assertEquals(manager.getAllTasks(), FileBackedTaskManager.loadFromFile(backupFile.toFile()).getAllTasks(),
+                "Задачи после загрузки снимка не совпадают.");
+    }
+
+    @Test
+    public void loadFromFileShouldFailOnCorruptedRecordInTheMiddleOfJournal() throws IOException {
+        final Path journalFile = TaskJournal.journalFileFor(backupFile.toFile()).toPath();
+        Files.writeString(journalFile, Files.readString(journalFile).replace("TaskTitle_1", "TaskTitle_X"));
+        final long length = Files.size(journalFile);
+
+        assertThrows(LoadingFromFileException.class, () -> FileBackedTaskManager.loadFromFile(backupFile.toFile()),
+                "Поврежденная запись посреди журнала должна прерывать загрузку.");
+        assertEquals(length, Files.size(journalFile),
+                "Журнал с поврежденной записью посередине не должен обрезаться.");
+    }
+
+    @Test
+    public void loadFromFileShouldReadLegacyBackupWithoutChecksums() throws IOException {
+        Files.delete(TaskJournal.journalFileFor(backupFile.toFile()).toPath());
+        Files.writeString(backupFile, String.join(System.lineSeparator(),
+                "ID,TYPE,TITLE,STATUS,DESCRIPTION,EPIC_ID(ONLY_FOR_SUBTASKS)",
+                "1,TASK,TaskTitle_1,NEW,TaskDesc_1,",
+                "2,EPIC,EpicTitle_2,NEW,EpicDesc_2,",
+                "3,SUBTASK,SubtaskTitle_3,DONE,SubtaskDesc_3,2") + System.lineSeparator());
+
+        TaskManager legacyManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(1, legacyManager.getAllTasks().size(), "Задачи из старого формата не загружены.");
+        assertEquals(1, legacyManager.getAllEpicTasks().size(), "Эпики из старого формата не загружены.");
+        assertEquals(1, legacyManager.getSubtasksOfEpic(2).size(), "Подзадачи из старого формата не загружены.");
+        assertEquals(TaskStatus.DONE, legacyManager.getEpicTask(2).getStatus(), "Статус эпика не пересчитан.");
+    }
+
+    @Test
+    public void binaryFormatShouldRestoreSameBoard() {
+        ((FileBackedTaskManager) manager).save();
+        final FileBackedTaskManager binaryManager = FileBackedTaskManager.loadFromFile(backupFile.toFile(),
+                Durability.sync(), new BinaryTaskSerializer());
+        binaryManager.save();
+        binaryManager.createTask(new Task("Заголовок, с запятой", "Описание, тоже с запятой"));
+        binaryManager.updateSubtask(subWithStatusDone);
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(binaryManager.getAllTasks().size(), newManager.getAllTasks().size(),
+                "Количество задач в двоичном формате не совпадает.");
+        for (Task t : binaryManager.getAllTasks()) {
+            assertEquals(t, newManager.getTask(t.getId()), "Задача в двоичном формате исказилась.");
+        }
+        assertEquals(TaskStatus.DONE, newManager.getEpicTask(epic.getId()).getStatus(),
+                "Статус эпика после загрузки двоичного журнала не совпадает.");
+    }
+
+    @Test
+    public void largeSnapshotShouldLoadInParallel() throws IOException {
+        final CSVTaskSerializer serializer = new CSVTaskSerializer();
+        final int epicCount = 1_000;
+        final int subtasksPerEpic = 100;
+        int id = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(backupFile))) {
+            out.write(serializer.getHeader());
+            for (int e = 0; e < epicCount; e++) {
+                final int epicId = ++id;
+                serializer.write(JournalRecord.put(new EpicTask(epicId, "Эпик " + epicId, "Описание эпика",
+                        TaskStatus.NEW)), out);
+                for (int s = 0; s < subtasksPerEpic; s++) {
+                    ++id;
+                    serializer.write(JournalRecord.put(new Subtask(id, "Подзадача " + id, "Описание подзадачи",
+                            s == 0 ? TaskStatus.DONE : TaskStatus.NEW, epicId)), out);
+                }
+            }
+        }
+        Files.deleteIfExists(TaskJournal.journalFileFor(backupFile.toFile()).toPath());
+        assertTrue(Files.size(backupFile) > 8L * 1024 * 1024, "Снимок слишком мал для параллельной загрузки.");
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(backupFile.toFile());
+
+        assertEquals(epicCount, newManager.getAllEpicTasks().size(), "Загружены не все эпики.");
+        assertEquals(epicCount * subtasksPerEpic, newManager.getAllSubtasks().size(), "Загружены не все подзадачи.");
+        final EpicTask firstEpic = newManager.getEpicTask(1);
+        assertEquals(subtasksPerEpic, firstEpic.getSubtasks().size(), "Подзадачи не привязаны к эпику.");
+        assertEquals(2, firstEpic.getSubtasks().getFirst(), "Подзадачи эпика идут не по порядку id.");
+        assertEquals(TaskStatus.IN_PROGRESS, firstEpic.getStatus(), "Статус эпика не пересчитан.");
+        assertEquals(id, newManager.getId(), "Счетчик id не восстановлен.");
+    }
+
+}
@@ -1,7 +1,9 @@
 package service;
 
+import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -52,6 +54,17 @@ class InMemoryHistoryManagerTest {
         assertEquals(originalHistorySize, history.size(), "Размер истории изменился.");
     }
 
+    @Test
+    public void sizeShouldFollowAddsAndRemoves() {
+        assertEquals(3, historyManager.size(), "Размер истории не совпадает.");
+        historyManager.add(task2);
+        assertEquals(3, historyManager.size(), "Повторный просмотр изменил размер истории.");
+        historyManager.remove(2);
+        assertEquals(2, historyManager.size(), "Размер истории не уменьшился на единицу.");
+        historyManager.removeAll(TaskType.TASK);
+        assertEquals(0, historyManager.size(), "История не очищена.");
+    }
+
     @Test
     public void historyShouldContainOriginalTasksAfterUpdate() {
         Task savedTask1 = new Task(task1.getTitle(), task1.getDescription());
@@ -127,4 +140,65 @@ class InMemoryHistoryManagerTest {
         assertTrue(history.isEmpty(), "История должна стать пустой.");
     }
 
+    @Test
+    public void oldestViewShouldBeEvictedWhenCapacityReached() {
+        historyManager = new InMemoryHistoryManager(2);
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task1);
+        historyManager.add(task3);
+        history = historyManager.getHistory();
+
+        assertEquals(List.of(task1, task3), history, "Должен вытесняться самый давний просмотр.");
+    }
+
+    @Test
+    public void getHistoryWithLimitShouldReturnMostRecentViews() {
+        historyManager.add(task1);
+
+        assertEquals(List.of(task3, task1), historyManager.getHistory(2));
+        assertEquals(List.of(task2, task3, task1), historyManager.getHistory(10));
+        assertTrue(historyManager.getHistory(0).isEmpty());
+    }
+
+    @Test
+    public void getHistoryWithLimitShouldWorkAfterRemovingHead() {
+        historyManager.remove(1);
+        historyManager.remove(2);
+
+        assertEquals(List.of(task3), historyManager.getHistory(5), "Обход с хвоста сломался после удаления головы.");
+    }
+
+    @Test
+    public void historyShouldKeepTypeAndEpicIdOfViewedTasks() {
+        Subtask subtask = new Subtask(4, "Sub", "Desc", TaskStatus.DONE, 2);
+        historyManager.add(subtask);
+
+        Task viewed = historyManager.getHistory(1).getFirst();
+
+        assertEquals(subtask, viewed, "Подзадача в истории потеряла тип или поля.");
+        assertEquals(2, ((Subtask) viewed).getEpicId());
+    }
+
+    @Test
+    public void changingReturnedHistoryShouldNotAffectIt() {
+        historyManager.getHistory().getFirst().setTitle("Измененный заголовок");
+
+        assertEquals(task1, historyManager.getHistory().getFirst());
+    }
+
+    @Test
+    public void removeAllShouldRemoveOnlyTasksOfGivenType() {
+        historyManager.add(new Subtask(4, "Sub", "Desc", TaskStatus.NEW, 2));
+        historyManager.add(task2);
+
+        historyManager.removeAll(TaskType.SUBTASK);
+        assertEquals(List.of(task1, task3, task2), historyManager.getHistory(), "Удалены не только подзадачи.");
+
+        historyManager.removeAll(TaskType.TASK);
+        assertTrue(historyManager.getHistory().isEmpty(), "История должна быть пустой.");
+
+        historyManager.add(task3);
+        assertEquals(List.of(task3), historyManager.getHistory(), "История не работает после очистки.");
+    }
 }
@@ -1,8 +1,11 @@
 package service;
 
+import model.Subtask;
+import model.TaskStatus;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InMemoryTaskManagerTest extends TaskManagerTest {
@@ -46,4 +49,30 @@ public class InMemoryTaskManagerTest extends TaskManagerTest {
         assertTrue(manager.getAllSubtasks().isEmpty());
     }
 
+    @Test
+    public void epicStatusCountersShouldFollowSubtaskChanges() {
+        ((InMemoryTaskManager) manager).setStatusVerification(true);
+        Subtask second = new Subtask("SubTitle", "SubDesc", epic.getId());
+        second.setStatus(TaskStatus.DONE);
+        manager.createSubtask(second);
+        assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
+
+        manager.updateSubtask(subWithStatusDone);
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        assertEquals(2, epic.getSubtaskCount(TaskStatus.DONE));
+
+        manager.deleteSubtask(second.getId());
+        assertEquals(1, epic.getSubtaskCount(TaskStatus.DONE));
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+    }
+
+    @Test
+    public void verificationShouldDetectStatusChangedBypassingManager() {
+        ((InMemoryTaskManager) manager).setStatusVerification(true);
+        sub.setStatus(TaskStatus.DONE);
+
+        assertThrows(IllegalStateException.class, () -> manager.updateEpicTaskStatus(epic.getId()),
+                "Расхождение счетчиков с подзадачами не обнаружено.");
+    }
+
 }
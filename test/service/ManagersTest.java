@@ -2,7 +2,9 @@ package service;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ManagersTest {
 
@@ -11,9 +13,21 @@ public class ManagersTest {
         assertNotNull(Managers.getDefault());
     }
 
+    @Test
+    public void methodGetConcurrentShouldReturnConcurrentManager() {
+        assertTrue(Managers.getConcurrent() instanceof ConcurrentTaskManager);
+    }
+
     @Test
     public void methodGetDefaultHistoryShouldReturnNotNull() {
         assertNotNull(Managers.getDefaultHistory());
     }
 
+    @Test
+    public void methodGetDefaultHistoryShouldUseGivenCapacity() {
+        HistoryManager history = Managers.getDefaultHistory(5);
+
+        assertEquals(5, ((InMemoryHistoryManager) history).getCapacity());
+    }
+
 }
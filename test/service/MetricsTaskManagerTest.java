@@ -0,0 +1,116 @@
+package service;
+
+import model.EpicTask;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.Test;
+import storage.HistoryLog;
+import storage.SnapshotCompactor;
+import storage.TaskJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTaskManagerTest {
+
+    @Test
+    public void callsShouldBeCountedPerMethod() {
+        final MetricsTaskManager manager = new MetricsTaskManager(new InMemoryTaskManager());
+        final Task task = new Task("Title", "Description");
+        manager.createTask(task);
+        manager.createTask(new Task("Title", "Description"));
+        manager.getTask(task.getId());
+        manager.getHistory(1);
+
+        final MetricsSnapshot metrics = manager.getMetrics();
+
+        assertEquals(2, metrics.getCallCount("createTask"), "Неверное число вызовов createTask.");
+        assertEquals(1, metrics.getCallCount("getTask"));
+        assertEquals(1, metrics.getCallCount("getHistory(limit)"));
+        assertEquals(0, metrics.getCallCount("getHistory"), "Перегрузки должны считаться отдельно.");
+        assertEquals(1, metrics.getHistorySize());
+        assertEquals(-1, metrics.getBytesWritten(), "У менеджера в памяти нет записанных байт.");
+        assertNull(metrics.getSaveStateTimes());
+    }
+
+    @Test
+    public void epicStatusRecomputationsShouldBeCounted() {
+        final MetricsTaskManager manager = new MetricsTaskManager(new InMemoryTaskManager());
+        final EpicTask epic = new EpicTask("Epic", "Description");
+        manager.createEpicTask(epic);
+        manager.createSubtask(new Subtask("Sub", "Description", epic.getId()));
+        manager.createSubtask(new Subtask("Sub", "Description", epic.getId()));
+
+        assertEquals(2, manager.getMetrics().getEpicStatusRecomputations());
+    }
+
+    @Test
+    public void fileBackedMetricsShouldTimeJournalAndSaveAndCountBytes() throws IOException {
+        final File backupFile = Files.createTempFile(Paths.get("test_resources"), "metricsTest", ".csv").toFile();
+        backupFile.deleteOnExit();
+        TaskJournal.journalFileFor(backupFile).deleteOnExit();
+        SnapshotCompactor.retiredJournalFileFor(TaskJournal.journalFileFor(backupFile)).deleteOnExit();
+        HistoryLog.historyFileFor(backupFile).deleteOnExit();
+        final FileBackedTaskManager fileBacked = new FileBackedTaskManager(backupFile);
+        final MetricsTaskManager manager = new MetricsTaskManager(fileBacked);
+
+        manager.createTask(new Task("Title", "Description"));
+        manager.createTask(new Task("Title", "Description"));
+        final long journalBytes = manager.getMetrics().getBytesWritten();
+        fileBacked.save();
+        final MetricsSnapshot metrics = manager.getMetrics();
+        fileBacked.close();
+
+        assertTrue(journalBytes > 0, "Запись в журнал не учтена.");
+        assertEquals(journalBytes + backupFile.length(), metrics.getBytesWritten(), "Снимок не учтен в байтах.");
+        assertEquals(2, metrics.getJournalAppendTimes().getCount(), "Запись в журнал каждой мутации не замерена.");
+        assertTrue(metrics.getJournalForceTimes().getCount() >= 2, "fsync журнала в режиме sync не замерен.");
+        assertEquals(1, metrics.getSaveStateTimes().getCount());
+        assertEquals(1, metrics.getSaveWriteTimes().getCount());
+    }
+
+    @Test
+    public void transactionCommitAndRollbackShouldBeTimed() {
+        final MetricsTaskManager manager = new MetricsTaskManager(new InMemoryTaskManager());
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.createTask(new Task("Title", "Description"));
+            transaction.commit();
+        }
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.createTask(new Task("Title", "Description"));
+            transaction.rollback();
+        }
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.createTask(new Task("Title", "Description"));
+            assertTrue(transaction.isActive());
+        }
+
+        final MetricsSnapshot metrics = manager.getMetrics();
+
+        assertEquals(3, metrics.getCallCount("beginTransaction"));
+        assertEquals(1, metrics.getCallCount("Transaction.commit"));
+        assertEquals(2, metrics.getCallCount("Transaction.rollback"), "Откат из close() не замерен.");
+        assertEquals(1, manager.getAllTasks().size(), "Обертка транзакции сломала откат.");
+    }
+
+    @Test
+    public void reporterShouldReceiveMetrics() {
+        final MetricsTaskManager manager = Managers.withMetrics(new InMemoryTaskManager());
+        manager.getAllTasks();
+        final List<MetricsSnapshot> reported = new ArrayList<>();
+
+        manager.report(reported::add);
+
+        assertEquals(1, reported.size());
+        assertEquals(1, reported.getFirst().getCallCount("getAllTasks"));
+        assertTrue(reported.getFirst().toString().contains("getAllTasks={count=1"));
+    }
+}
@@ -0,0 +1,72 @@
+package service;
+
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchIndexTest {
+    private SearchIndex index;
+
+    @BeforeEach
+    public void beforeEach() {
+        index = new SearchIndex();
+    }
+
+    @Test
+    public void tokenizeShouldNormalizeCyrillicAndLatin() {
+        assertEquals(List.of("еще", "отчет", "по", "а", "б", "тесту"), SearchIndex.tokenize("Ещё отчёт по А/Б-тесту"));
+        assertEquals(List.of("roboto", "18", "bold", "cafe"), SearchIndex.tokenize("Roboto 18 BOLD, café"));
+        assertEquals(List.of("кабинет", "14"), SearchIndex.tokenize("Кабинет №14"));
+    }
+
+    @Test
+    public void searchShouldRequireAllWordsAndRankTitleAboveDescription() {
+        index.add(new Task(1, "Форматирование отчета", "Отчет по тесту", null));
+        index.add(new Task(2, "Забрать подарок", "Отчет бухгалтерии", null));
+        index.add(new Subtask(3, "Отформатировать текст", "Отчет готов", null, 1));
+
+        assertArrayEquals(new int[]{1, 2, 3}, index.search("отчёт", 10),
+                "Совпадение в названии должно стоять выше совпадений в описании.");
+        assertArrayEquals(new int[]{2}, index.search("отчет подарок", 10));
+        assertArrayEquals(new int[]{1}, index.search("отчет", 1));
+        assertArrayEquals(new int[0], index.search("отчет несуществующее", 10));
+    }
+
+    @Test
+    public void reindexAndClearShouldDropOldTerms() {
+        final Task task = new Task(1, "Старое название", "", null);
+        index.add(task);
+        index.add(new Subtask(2, "Старое название", "", null, 5));
+
+        task.setTitle("Новое название");
+        index.add(task);
+        assertArrayEquals(new int[]{2}, index.search("старое", 10), "Старые термы задачи остались в индексе.");
+
+        index.clear(TaskType.SUBTASK);
+        assertArrayEquals(new int[0], index.search("старое", 10));
+        assertArrayEquals(new int[]{1}, index.search("название", 10));
+    }
+
+    @Test
+    public void postingsShouldHandleIdsInAnyOrder() {
+        for (int id = 10_000; id >= 1; id--) {
+            index.add(new Task(id, id % 2 == 0 ? "Четная задача" : "Нечетная задача", "Общее описание", null));
+        }
+        for (int id = 1; id <= 10_000; id += 4) {
+            index.remove(TaskType.TASK, id);
+        }
+
+        assertEquals(5_000, index.search("четная", 10_000).length, "Потерялись вхождения четных задач.");
+        final int[] odd = index.search("нечетная описание", 10_000);
+        assertEquals(2_500, odd.length, "Удаленные задачи остались в индексе.");
+        assertArrayEquals(new int[]{2, 3, 4, 6}, index.search("задача описание", 4),
+                "При равном счете задачи должны идти по возрастанию id.");
+    }
+}
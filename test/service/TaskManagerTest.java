@@ -1,12 +1,16 @@
 package service;
 
+import exceptions.InvalidBatchException;
 import model.EpicTask;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TaskManagerTest {
@@ -17,9 +21,16 @@ public class TaskManagerTest {
     protected Subtask subWithStatusDone;
     protected Subtask subWithStatusInProgress;
 
+    /**
+     * Менеджер, на котором строится общая доска; наследники подставляют свою реализацию.
+     */
+    protected TaskManager createManager() {
+        return new InMemoryTaskManager();
+    }
+
     @BeforeEach
     public void beforeEach() {
-        manager = new InMemoryTaskManager();
+        manager = createManager();
 
         task = new Task("TaskTitle_1", "TaskDesc_1");
         manager.createTask(task);
@@ -54,6 +65,15 @@ public class TaskManagerTest {
         assertNotNull(manager.getTask(taskId), "Получен null.");
     }
 
+    @Test
+    public void gettersShouldReturnNullForNullId() {
+        assertNull(manager.getTask(null));
+        assertNull(manager.getEpicTask(null));
+        assertNull(manager.getSubtask(null));
+        assertTrue(manager.getSubtasksOfEpic(null).isEmpty());
+        assertTrue(manager.getHistory().isEmpty(), "Пустой просмотр попал в историю.");
+    }
+
     @Test
     public void AnyTaskAddedToHistoryAfterGetTask() {
         manager.getTask(task.getId());
@@ -99,4 +119,321 @@ public class TaskManagerTest {
         manager.createSubtask(sub);
         assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
     }
+
+    @Test
+    public void updateSubtaskShouldMoveSubtaskToAnotherEpic() {
+        EpicTask otherEpic = new EpicTask("OtherEpic", "Desc");
+        manager.createEpicTask(otherEpic);
+        Subtask otherSub = new Subtask("OtherSub", "Desc", otherEpic.getId());
+        manager.createSubtask(otherSub);
+        Subtask moved = new Subtask(sub.getId(), "Moved", "Desc", TaskStatus.DONE, otherEpic.getId());
+
+        manager.updateSubtask(moved);
+
+        assertTrue(epic.getSubtasks().isEmpty(), "Подзадача осталась в прежнем эпике.");
+        assertTrue(manager.getSubtasksOfEpic(epic.getId()).isEmpty());
+        assertEquals(TaskStatus.NEW, epic.getStatus());
+        assertEquals(List.of(sub.getId(), otherSub.getId()), otherEpic.getSubtasks(),
+                "Перенесенная подзадача должна встать на место по возрастанию id.");
+        assertEquals(1, otherEpic.getSubtaskCount(TaskStatus.DONE));
+        assertEquals(1, otherEpic.getSubtaskCount(TaskStatus.NEW));
+        assertEquals(TaskStatus.IN_PROGRESS, otherEpic.getStatus());
+        assertEquals(2, manager.snapshot().getSubtasksOfEpic(otherEpic.getId()).size());
+        assertTrue(manager.snapshot().getSubtasksOfEpic(epic.getId()).isEmpty());
+    }
+
+    @Test
+    public void updateSubtaskShouldIgnoreMoveToMissingEpic() {
+        Subtask moved = new Subtask(sub.getId(), "Moved", "Desc", TaskStatus.DONE, epic.getId() + 100);
+
+        manager.updateSubtask(moved);
+
+        assertEquals(List.of(sub), manager.getSubtasksOfEpic(epic.getId()));
+        assertEquals(TaskStatus.NEW, manager.getSubtask(sub.getId()).getStatus());
+    }
+
+    @Test
+    public void getByStatusShouldReturnOnlyMatchingTasks() {
+        manager.updateSubtask(subWithStatusDone);
+
+        assertEquals(List.of(subWithStatusDone), manager.getByStatus(TaskType.SUBTASK, TaskStatus.DONE));
+        assertTrue(manager.getByStatus(TaskType.SUBTASK, TaskStatus.NEW).isEmpty(),
+                "Подзадача осталась в индексе прежнего статуса.");
+        assertEquals(List.of(epic), manager.getByStatus(TaskType.EPIC, TaskStatus.DONE),
+                "Пересчитанный статус эпика не попал в индекс.");
+        assertEquals(1, manager.countByStatus(TaskType.TASK, TaskStatus.NEW));
+    }
+
+    @Test
+    public void getByStatusShouldForgetDeletedTasks() {
+        manager.deleteTask(task.getId());
+        manager.deleteEpicTask(epic.getId());
+
+        assertEquals(0, manager.countByStatus(TaskType.TASK, TaskStatus.NEW));
+        assertEquals(0, manager.countByStatus(TaskType.EPIC, TaskStatus.NEW));
+        assertEquals(0, manager.countByStatus(TaskType.SUBTASK, TaskStatus.NEW), "Подзадачи эпика остались в индексе.");
+    }
+
+    @Test
+    public void getByTypeShouldReturnTasksOfThatType() {
+        assertEquals(List.of(task), manager.getByType(TaskType.TASK));
+        assertEquals(List.of(epic), manager.getByType(TaskType.EPIC));
+        assertEquals(List.of(sub), manager.getByType(TaskType.SUBTASK));
+    }
+
+    @Test
+    public void searchShouldFindTasksByWordsAndForgetDeleted() {
+        assertEquals(List.of(sub), manager.search("subtasktitle_3", 10));
+
+        manager.updateSubtask(subWithStatusDone);
+        assertEquals(List.of(subWithStatusDone), manager.search("newsubdesc", 10),
+                "Обновленное описание не попало в индекс.");
+        assertTrue(manager.search("subtasktitle_3", 10).isEmpty(), "Старое название осталось в индексе.");
+
+        manager.deleteEpicTask(epic.getId());
+        assertTrue(manager.search("newsubdesc", 10).isEmpty(), "Подзадача удаленного эпика осталась в индексе.");
+    }
+
+    @Test
+    public void pagesShouldWalkTasksInIdOrder() {
+        for (int i = 0; i < 5; i++) {
+            manager.createTask(new Task("Task_" + i, "Desc_" + i));
+        }
+        manager.deleteTask(task.getId());
+
+        Page<Task> first = manager.getTasks(Page.FIRST_CURSOR, 3);
+        assertEquals(3, first.getItems().size());
+        assertTrue(first.hasNext());
+        Page<Task> second = manager.getTasks(first.getNextCursor(), 3);
+        assertEquals(2, second.getItems().size());
+        assertFalse(second.hasNext(), "После последней страницы не должно быть следующей.");
+
+        List<Integer> ids = manager.streamTasks().map(Task::getId).toList();
+        assertEquals(5, ids.size(), "Удаленная задача попала в поток.");
+        assertEquals(ids.stream().sorted().toList(), ids, "Поток задач не упорядочен по id.");
+        assertEquals(first.getItems().getFirst().getId(), ids.getFirst());
+    }
+
+    @Test
+    public void pageWithMaxLimitShouldReturnEverything() {
+        Page<Task> tasks = manager.getTasks(Page.FIRST_CURSOR, Integer.MAX_VALUE);
+        assertEquals(List.of(task), tasks.getItems());
+        assertFalse(tasks.hasNext());
+        assertEquals(List.of(epic), manager.getEpicTasks(Page.FIRST_CURSOR, Integer.MAX_VALUE).getItems());
+        assertEquals(List.of(sub), manager.getSubtasks(Page.FIRST_CURSOR, Integer.MAX_VALUE).getItems());
+        assertEquals(List.of(sub),
+                manager.getSubtasksOfEpic(epic.getId(), Page.FIRST_CURSOR, Integer.MAX_VALUE).getItems());
+    }
+
+    @Test
+    public void subtasksOfEpicShouldBePagedAndStreamed() {
+        for (int i = 0; i < 4; i++) {
+            manager.createSubtask(new Subtask("Sub_" + i, "Desc_" + i, epic.getId()));
+        }
+
+        Page<Subtask> first = manager.getSubtasksOfEpic(epic.getId(), Page.FIRST_CURSOR, 2);
+        assertEquals(List.of(sub.getId(), sub.getId() + 1), first.getItems().stream().map(Task::getId).toList());
+        Page<Subtask> rest = manager.getSubtasksOfEpic(epic.getId(), first.getNextCursor(), 10);
+        assertEquals(3, rest.getItems().size());
+        assertFalse(rest.hasNext());
+
+        assertEquals(manager.getSubtasksOfEpic(epic.getId()), manager.streamSubtasksOfEpic(epic.getId()).toList());
+        assertEquals(1, manager.streamSubtasks().limit(1).count(), "Поток должен читаться лениво и частично.");
+    }
+
+    @Test
+    public void applyBatchShouldApplyWholeBatch() {
+        Task imported = new Task("Imported", "Desc");
+        Subtask importedSub = new Subtask("ImportedSub", "Desc", epic.getId());
+        importedSub.setStatus(TaskStatus.DONE);
+
+        manager.applyBatch(List.of(
+                Mutation.createTask(imported),
+                Mutation.createSubtask(importedSub),
+                Mutation.updateSubtask(subWithStatusDone),
+                Mutation.deleteTask(task.getId())));
+
+        assertEquals(List.of(imported), manager.getAllTasks());
+        assertEquals(2, manager.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(TaskStatus.DONE, epic.getStatus(), "Статус эпика не пересчитан после пакета.");
+    }
+
+    @Test
+    public void applyBatchShouldRejectInvalidBatchWithoutChanges() {
+        Task imported = new Task("Imported", "Desc");
+        List<Mutation> batch = List.of(
+                Mutation.createTask(imported),
+                Mutation.deleteEpicTask(epic.getId()),
+                Mutation.createSubtask(new Subtask("Orphan", "Desc", epic.getId())));
+
+        assertThrows(InvalidBatchException.class, () -> manager.applyBatch(batch),
+                "Подзадача удаленного в пакете эпика должна отклонить пакет.");
+        assertEquals(List.of(task), manager.getAllTasks(), "Отклоненный пакет изменил задачи.");
+        assertEquals(List.of(epic), manager.getAllEpicTasks());
+        assertEquals(List.of(sub), manager.getAllSubtasks());
+    }
+
+    @Test
+    public void applyBatchShouldKeepSubtaskMovedOutOfDeletedEpic() {
+        EpicTask otherEpic = new EpicTask("OtherEpic", "Desc");
+        manager.createEpicTask(otherEpic);
+        Subtask moved = new Subtask(sub.getId(), "Moved", "Desc", TaskStatus.DONE, otherEpic.getId());
+
+        manager.applyBatch(List.of(
+                Mutation.updateSubtask(moved),
+                Mutation.deleteEpicTask(epic.getId()),
+                Mutation.deleteSubtask(sub.getId())));
+
+        assertTrue(manager.getAllSubtasks().isEmpty(), "Подзадача, перенесенная из удаленного эпика, не найдена.");
+        assertEquals(List.of(otherEpic), manager.getAllEpicTasks());
+        assertTrue(otherEpic.getSubtasks().isEmpty());
+    }
+
+    @Test
+    public void applyBatchShouldCreateSubtaskOfEpicCreatedInSameBatch() {
+        EpicTask importedEpic = new EpicTask("ImportedEpic", "Desc");
+        Subtask importedSub = new Subtask("ImportedSub", "Desc", null);
+        importedSub.setStatus(TaskStatus.DONE);
+
+        manager.applyBatch(List.of(
+                Mutation.createEpicTask(importedEpic),
+                Mutation.createSubtask(importedSub, importedEpic)));
+
+        assertEquals(importedEpic.getId(), importedSub.getEpicId(), "Подзадаче не подставлен id эпика из пакета.");
+        assertEquals(List.of(importedSub), manager.getSubtasksOfEpic(importedEpic.getId()));
+        assertEquals(TaskStatus.DONE, importedEpic.getStatus());
+    }
+
+    @Test
+    public void applyBatchShouldRejectReferenceToEpicNotCreatedInBatch() {
+        EpicTask foreignEpic = new EpicTask("ForeignEpic", "Desc");
+        List<Mutation> batch = List.of(Mutation.createSubtask(new Subtask("Orphan", "Desc", null), foreignEpic));
+
+        assertThrows(InvalidBatchException.class, () -> manager.applyBatch(batch),
+                "Ссылка на эпик, не созданный в пакете, должна отклонить пакет.");
+        assertEquals(List.of(sub), manager.getAllSubtasks());
+    }
+
+    @Test
+    public void applyBatchShouldRollBackWhenApplyFails() {
+        Task broken = new Task("Broken", "Desc") {
+            @Override
+            public void setId(Integer id) {
+                throw new IllegalStateException("Сбой при применении.");
+            }
+        };
+        List<Mutation> batch = List.of(
+                Mutation.createTask(new Task("Imported", "Desc")),
+                Mutation.updateSubtask(subWithStatusDone),
+                Mutation.deleteTask(task.getId()),
+                Mutation.createTask(broken));
+
+        assertThrows(IllegalStateException.class, () -> manager.applyBatch(batch));
+        assertEquals(List.of(task), manager.getAllTasks(), "Сорвавшийся пакет оставил часть изменений.");
+        assertEquals(List.of(sub), manager.getAllSubtasks());
+        assertEquals(TaskStatus.NEW, manager.getSubtask(sub.getId()).getStatus());
+        assertEquals(TaskStatus.NEW, epic.getStatus(), "Статус эпика не откатился.");
+        assertEquals(List.of(task), manager.snapshot().getAllTasks(), "Снимок видит откаченный пакет.");
+        try (Transaction transaction = manager.beginTransaction()) {
+            assertTrue(transaction.isActive(), "Внутренний журнал пакета остался открытым.");
+        }
+    }
+
+    @Test
+    public void rollbackShouldRestoreStateBeforeTransaction() {
+        Transaction transaction = manager.beginTransaction();
+        manager.updateSubtask(subWithStatusDone);
+        manager.createSubtask(new Subtask("TxSub", "Desc", epic.getId()));
+        manager.deleteTask(task.getId());
+        EpicTask txEpic = new EpicTask("TxEpic", "Desc");
+        manager.createEpicTask(txEpic);
+        transaction.rollback();
+
+        assertEquals(List.of(task), manager.getAllTasks(), "Удаленная в транзакции задача не вернулась.");
+        assertEquals(List.of(epic), manager.getAllEpicTasks(), "Созданный в транзакции эпик остался.");
+        assertEquals(List.of(sub), manager.getAllSubtasks());
+        assertEquals(TaskStatus.NEW, manager.getSubtask(sub.getId()).getStatus());
+        assertEquals(List.of(sub.getId()), epic.getSubtasks(), "Связи эпика не откатились.");
+        assertEquals(TaskStatus.NEW, epic.getStatus(), "Статус эпика не откатился.");
+        assertEquals(List.of(sub), manager.getByStatus(TaskType.SUBTASK, TaskStatus.NEW), "Индекс не откатился.");
+        assertTrue(manager.search("TxSub", 10).isEmpty(), "Поиск находит откаченную задачу.");
+    }
+
+    @Test
+    public void rollbackShouldRestoreDeletedEpicWithSubtasks() {
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.deleteAllEpicTasks();
+            assertTrue(manager.getAllSubtasks().isEmpty());
+            assertTrue(transaction.isActive());
+        }
+
+        assertEquals(List.of(epic), manager.getAllEpicTasks(), "Транзакция без commit() должна откатиться в close().");
+        assertEquals(List.of(sub), manager.getAllSubtasks());
+        assertEquals(List.of(sub), manager.getSubtasksOfEpic(epic.getId()));
+    }
+
+    @Test
+    public void commitShouldKeepChanges() {
+        try (Transaction transaction = manager.beginTransaction()) {
+            manager.updateSubtask(subWithStatusDone);
+            manager.deleteTask(task.getId());
+            transaction.commit();
+        }
+
+        assertTrue(manager.getAllTasks().isEmpty());
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+    }
+
+    @Test
+    public void secondTransactionShouldNotOpenUntilFirstFinished() {
+        Transaction transaction = manager.beginTransaction();
+
+        assertThrows(IllegalStateException.class, manager::beginTransaction);
+        transaction.commit();
+        assertThrows(IllegalStateException.class, transaction::commit, "Транзакция завершается один раз.");
+        manager.beginTransaction().rollback();
+    }
+
+    @Test
+    public void snapshotShouldNotSeeLaterChanges() {
+        TaskSnapshot before = manager.snapshot();
+
+        manager.updateSubtask(subWithStatusDone);
+        manager.deleteTask(task.getId());
+        manager.createSubtask(new Subtask("Later", "Desc", epic.getId()));
+
+        assertEquals(List.of(task), before.getAllTasks());
+        assertEquals(List.of(sub), before.getSubtasksOfEpic(epic.getId()));
+        assertEquals(TaskStatus.NEW, before.getSubtask(sub.getId()).getStatus(), "Снимок увидел позднее изменение.");
+        assertEquals(TaskStatus.NEW, before.getEpicTask(epic.getId()).getStatus());
+
+        TaskSnapshot after = manager.snapshot();
+        assertTrue(after.getVersion() > before.getVersion());
+        assertTrue(after.getAllTasks().isEmpty());
+        assertEquals(2, after.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(TaskStatus.IN_PROGRESS, after.getEpicTask(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void changingSnapshotTaskShouldNotAffectSnapshot() {
+        TaskSnapshot snapshot = manager.snapshot();
+
+        snapshot.getTask(task.getId()).setStatus(TaskStatus.DONE);
+        manager.deleteAllEpicTasks();
+
+        assertEquals(TaskStatus.NEW, snapshot.getTask(task.getId()).getStatus());
+        assertEquals(List.of(epic), snapshot.getAllEpicTasks());
+        assertTrue(manager.snapshot().getAllSubtasks().isEmpty());
+    }
+
+    @Test
+    public void historyShouldReturnTypedTasksAsTheyWereViewed() {
+        manager.getSubtask(sub.getId());
+        manager.updateSubtask(subWithStatusDone);
+
+        List<Task> history = manager.getHistory();
+
+        assertEquals(List.of(sub), history, "В истории должна остаться просмотренная версия подзадачи.");
+        assertEquals(TaskStatus.NEW, history.getFirst().getStatus());
+    }
 }
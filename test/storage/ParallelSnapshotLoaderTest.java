@@ -0,0 +1,92 @@
+package storage;
+
+import exceptions.LoadingFromFileException;
+import mappers.BinaryTaskSerializer;
+import mappers.CSVTaskSerializer;
+import mappers.TaskSerializer;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelSnapshotLoaderTest {
+    private static final int TASK_COUNT = 5_000;
+
+    private Path file;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        file = Files.createTempFile(Paths.get("test_resources"), "parallelSnapshotTest", ".bin");
+        file.toFile().deleteOnExit();
+    }
+
+    private void writeSnapshot(TaskSerializer serializer) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            out.write(serializer.getHeader());
+            for (int id = 1; id <= TASK_COUNT; id++) {
+                serializer.write(JournalRecord.put(new Task(id, "Задача " + id, "Описание", TaskStatus.NEW)), out);
+            }
+        }
+    }
+
+    private List<Task> loadAll() throws IOException {
+        return new ParallelSnapshotLoader(file.toFile(), 1024, ForkJoinPool.commonPool()).load().stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    @Test
+    public void shouldDecodeAllChunksInFileOrder() throws IOException {
+        for (TaskSerializer serializer : List.of(new CSVTaskSerializer(), new BinaryTaskSerializer())) {
+            writeSnapshot(serializer);
+
+            final List<Task> tasks = loadAll();
+
+            assertEquals(TASK_COUNT, tasks.size(), "Прочитаны не все записи снимка.");
+            for (int i = 0; i < tasks.size(); i++) {
+                assertEquals(i + 1, tasks.get(i).getId(), "Куски снимка склеены не по порядку.");
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailOnCorruptedRecordFollowedByValidOnes() throws IOException {
+        for (TaskSerializer serializer : List.of(new CSVTaskSerializer(), new BinaryTaskSerializer())) {
+            writeSnapshot(serializer);
+            final byte[] content = Files.readAllBytes(file);
+            content[content.length / 2] ^= 0x10;
+            Files.write(file, content);
+
+            assertThrows(LoadingFromFileException.class, this::loadAll,
+                    "Поврежденная запись посреди снимка должна прерывать загрузку.");
+        }
+    }
+
+    @Test
+    public void shouldDropCorruptedTail() throws IOException {
+        for (TaskSerializer serializer : List.of(new CSVTaskSerializer(), new BinaryTaskSerializer())) {
+            writeSnapshot(serializer);
+            final byte[] content = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(content, content.length - 3));
+
+            final List<Task> tasks = loadAll();
+
+            assertEquals(TASK_COUNT - 1, tasks.size(), "Должна отбрасываться только оборванная последняя запись.");
+            assertTrue(tasks.stream().allMatch(task -> task.getId() < TASK_COUNT), "Загружена оборванная запись.");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package storage;
+
+import mappers.BinaryTaskSerializer;
+import mappers.CSVFormatter;
+import mappers.CSVTaskSerializer;
+import mappers.TaskSerializer;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RecordReaderTest {
+    private Path file;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        file = Files.createTempFile(Paths.get("test_resources"), "recordReaderTest", ".bin");
+        file.toFile().deleteOnExit();
+    }
+
+    private void writeTasks(TaskSerializer serializer, int count, String description) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            out.write(serializer.getHeader());
+            for (int id = 1; id <= count; id++) {
+                serializer.write(JournalRecord.put(new Task(id, "Задача " + id, description, TaskStatus.NEW)), out);
+            }
+        }
+    }
+
+    private int readAll() throws IOException {
+        int count = 0;
+        try (RecordReader reader = new RecordReader(file.toFile())) {
+            JournalRecord record;
+            while ((record = reader.next()) != null) {
+                assertEquals(++count, record.getId(), "Записи прочитаны не по порядку.");
+            }
+            assertEquals(Files.size(file), reader.getValidLength(), "Файл прочитан не до конца.");
+        }
+        return count;
+    }
+
+    @Test
+    public void shouldReadRecordsAcrossWindowBoundaries() throws IOException {
+        writeTasks(new CSVTaskSerializer(), 50_000, "Описание задачи для проверки границ окна");
+
+        assertEquals(50_000, readAll(), "Прочитаны не все записи.");
+    }
+
+    @Test
+    public void shouldReadRecordLongerThanWindow() throws IOException {
+        writeTasks(new BinaryTaskSerializer(), 3, "ж".repeat(3 << 20));
+
+        assertEquals(3, readAll(), "Запись длиннее окна не прочитана.");
+    }
+
+    @Test
+    public void shouldReadLinesWithWindowsSeparators() throws IOException {
+        final String record = CSVFormatter.appendChecksum(
+                CSVFormatter.taskToString(new Task(1, "Title", "Description", TaskStatus.DONE)));
+        Files.writeString(file, CSVFormatter.getHeader() + "\r\n" + record + "\r\n", StandardCharsets.UTF_8);
+
+        try (RecordReader reader = new RecordReader(file.toFile())) {
+            assertEquals(TaskStatus.DONE, reader.next().getTask().getStatus(), "Строка с \\r\\n не прочитана.");
+            assertNull(reader.next(), "После последней записи остались данные.");
+        }
+    }
+}
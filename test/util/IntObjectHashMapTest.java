@@ -0,0 +1,112 @@
+package util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IntObjectHashMapTest {
+    private IntObjectHashMap<String> map;
+
+    @BeforeEach
+    public void beforeEach() {
+        map = new IntObjectHashMap<>();
+    }
+
+    @Test
+    public void putShouldReplaceValueOfExistingKey() {
+        assertNull(map.put(1, "first"));
+        assertEquals("first", map.put(1, "second"), "Должно вернуться прежнее значение.");
+        assertEquals("second", map.get(1));
+        assertEquals(1, map.size(), "Повторный put не должен увеличивать размер.");
+    }
+
+    @Test
+    public void removeShouldKeepCollidingKeysReachable() {
+        // 16 и 32 попадают в ту же ячейку, что и 0, при начальной емкости 16.
+        map.put(0, "a");
+        map.put(16, "b");
+        map.put(32, "c");
+        map.put(1, "d");
+
+        assertEquals("a", map.remove(0));
+
+        assertFalse(map.containsKey(0));
+        assertEquals("b", map.get(16), "Ключ из того же кластера потерялся после удаления.");
+        assertEquals("c", map.get(32), "Ключ из того же кластера потерялся после удаления.");
+        assertEquals("d", map.get(1));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMapUnderRandomOperations() {
+        final Map<Integer, String> expected = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key), "Расхождение при удалении ключа " + key);
+            } else {
+                final String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value), "Расхождение при вставке ключа " + key);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        final List<String> values = new ArrayList<>(map.values());
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+    }
+
+    @Test
+    public void valuesShouldFollowIdOrderForSequentialKeys() {
+        for (int id = 1; id <= 10; id++) {
+            map.put(id, "task" + id);
+        }
+
+        final List<String> values = new ArrayList<>(map.values());
+
+        assertEquals("task1", values.getFirst());
+        assertEquals("task10", values.getLast());
+    }
+
+    @Test
+    public void iteratorShouldFailWhenMapChanges() {
+        map.put(1, "a");
+        map.put(2, "b");
+        final Iterator<String> iterator = map.values().iterator();
+        iterator.next();
+
+        map.put(3, "c");
+
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    public void clearShouldEmptyMap() {
+        for (int id = 0; id < 100; id++) {
+            map.put(id, "v");
+        }
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(5));
+        assertFalse(map.values().iterator().hasNext());
+    }
+}
@@ -0,0 +1,120 @@
+package util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IntOrderedSetTest {
+    private IntOrderedSet set;
+
+    @BeforeEach
+    public void beforeEach() {
+        set = new IntOrderedSet();
+    }
+
+    @Test
+    public void shouldKeepInsertionOrderAfterRemovals() {
+        for (int value = 1; value <= 10; value++) {
+            set.add(value);
+        }
+
+        set.remove(1);
+        set.remove(5);
+        set.remove(10);
+
+        assertEquals(List.of(2, 3, 4, 6, 7, 8, 9), set.asList());
+        assertEquals(7, set.asList().get(4));
+        assertFalse(set.add(3), "Повторное добавление не должно менять множество.");
+        assertFalse(set.contains(5));
+    }
+
+    @Test
+    public void copyShouldKeepOrderWithoutRemovedValues() {
+        for (int value = 1; value <= 40; value++) {
+            set.add(value);
+        }
+        for (int value = 2; value <= 40; value += 2) {
+            set.remove(value);
+        }
+
+        final IntOrderedSet copy = new IntOrderedSet(set);
+        assertEquals(set.asList(), copy.asList());
+        assertEquals(20, copy.size());
+        assertTrue(copy.contains(39));
+        assertFalse(copy.contains(2), "Удаленное значение попало в копию.");
+        assertTrue(copy.add(2));
+        assertFalse(set.contains(2), "Копия должна быть независимой.");
+    }
+
+    @Test
+    public void afterShouldSkipRemovedValues() {
+        for (int value = 1; value <= 10; value++) {
+            set.add(value);
+        }
+        set.remove(4);
+        set.remove(6);
+
+        assertArrayEquals(new int[]{5, 7, 8}, set.after(3, 3));
+        assertArrayEquals(new int[]{7, 8}, set.after(6, 2), "Курсор на удаленном значении должен работать.");
+        assertArrayEquals(new int[0], set.after(10, 5));
+    }
+
+    @Test
+    public void addInOrderShouldKeepValuesSorted() {
+        for (int value = 2; value <= 20; value += 2) {
+            set.add(value);
+        }
+        set.remove(10);
+
+        assertTrue(set.addInOrder(7));
+        assertTrue(set.addInOrder(1));
+        assertTrue(set.addInOrder(25));
+        assertFalse(set.addInOrder(4), "Повторное добавление не должно менять множество.");
+
+        assertEquals(List.of(1, 2, 4, 6, 7, 8, 12, 14, 16, 18, 20, 25), set.asList());
+        assertArrayEquals(new int[]{7, 8}, set.after(6, 2), "Двоичный поиск сломался после вставки.");
+        assertTrue(set.contains(7));
+        assertTrue(set.remove(7));
+        assertFalse(set.contains(7));
+    }
+
+    @Test
+    public void shouldBehaveLikeListUnderRandomOperations() {
+        final List<Integer> expected = new ArrayList<>();
+        final Random random = new Random(7);
+        int next = 0;
+        for (int i = 0; i < 50_000; i++) {
+            if (random.nextInt(3) == 0 && !expected.isEmpty()) {
+                final Integer value = expected.get(random.nextInt(expected.size()));
+                expected.remove(value);
+                assertTrue(set.remove(value));
+            } else {
+                next += 1 + random.nextInt(3);
+                expected.add(next);
+                assertTrue(set.add(next));
+            }
+        }
+
+        assertEquals(expected, set.asList());
+        assertEquals(expected.size(), set.size());
+        for (Integer value : expected) {
+            assertTrue(set.contains(value), "Значение " + value + " потерялось в индексе.");
+        }
+    }
+
+    @Test
+    public void viewShouldBeReadOnly() {
+        set.add(1);
+
+        assertThrows(UnsupportedOperationException.class, () -> set.asList().add(2));
+    }
+}
@@ -0,0 +1,98 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsShouldCoverValuesWithoutGaps() {
+        long previousHighest = -1;
+        for (int index = 0; LatencyHistogram.highestValueAt(index) != Long.MAX_VALUE; index++) {
+            final long highest = LatencyHistogram.highestValueAt(index);
+            assertEquals(index, LatencyHistogram.indexOf(previousHighest + 1), "Корзина не начинается после предыдущей.");
+            assertEquals(index, LatencyHistogram.indexOf(highest), "Верхняя граница корзины попала в другую корзину.");
+            previousHighest = highest;
+        }
+        assertEquals(LatencyHistogram.indexOf(previousHighest + 1), LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesShouldStayWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Random random = new Random(11);
+        final long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[]{50, 90, 99, 99.9, 100}) {
+            final long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            final long estimate = snapshot.getValueAtPercentile(percentile);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 32 + 1,
+                    "Перцентиль " + percentile + ": " + estimate + " вместо " + exact);
+        }
+    }
+
+    @Test
+    public void emptySnapshotShouldReturnZeros() {
+        final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0.0, snapshot.getMean());
+    }
+
+    @Test
+    public void parallelRecordsShouldAllBeCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final long offset = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    histogram.record(i * 4L - offset);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(40_000, snapshot.getCount(), "Параллельные записи потерялись.");
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(40_000, snapshot.getMax());
+        assertEquals(20_000.5, snapshot.getMean(), 1e-9, "Сумма параллельных записей неверна.");
+    }
+
+    @Test
+    public void recordShouldNotAllocate() {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i);
+        }
+
+        final long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 31L);
+        }
+        final long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated < 1024, "Запись в гистограмму выделила " + allocated + " байт.");
+    }
+}
@@ -0,0 +1,74 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistentIntMapTest {
+
+    @Test
+    public void putShouldNotChangePreviousVersion() {
+        final PersistentIntMap<String> first = PersistentIntMap.<String>empty().put(1, "a").put(2, "b");
+
+        final PersistentIntMap<String> second = first.put(1, "c").remove(2).put(3, "d");
+
+        assertEquals("a", first.get(1), "Старая версия изменилась после put.");
+        assertEquals("b", first.get(2), "Старая версия изменилась после remove.");
+        assertNull(first.get(3));
+        assertEquals(2, first.size());
+        assertEquals("c", second.get(1));
+        assertNull(second.get(2));
+        assertEquals(2, second.size());
+    }
+
+    @Test
+    public void removeOfMissingKeyShouldReturnSameMap() {
+        final PersistentIntMap<String> map = PersistentIntMap.<String>empty().put(7, "a");
+
+        assertSame(map, map.remove(8));
+        assertTrue(map.remove(7).isEmpty());
+    }
+
+    @Test
+    public void shouldBehaveLikeTreeMapUnderRandomOperations() {
+        final TreeMap<Integer, String> expected = new TreeMap<>();
+        final List<PersistentIntMap<String>> versions = new ArrayList<>();
+        final List<Map<Integer, String>> expectedVersions = new ArrayList<>();
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        final Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            final int key = random.nextInt(3) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, "v" + i);
+                map = map.put(key, "v" + i);
+            }
+            if (i % 10_000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        final List<String> values = new ArrayList<>();
+        map.forEach(values::add);
+        assertEquals(new ArrayList<>(expected.values()), values, "Обход должен идти по возрастанию ключей.");
+        for (int v = 0; v < versions.size(); v++) {
+            final List<String> versionValues = new ArrayList<>();
+            versions.get(v).forEach(versionValues::add);
+            assertEquals(new ArrayList<>(expectedVersions.get(v).values()), versionValues,
+                    "Сохраненная версия " + v + " изменилась.");
+        }
+    }
+}